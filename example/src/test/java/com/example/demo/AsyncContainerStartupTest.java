@@ -0,0 +1,32 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.testcontainers.containers.GenericContainer;
+
+@ActiveProfiles("test")
+@SpringBootTest
+@ContextConfiguration(classes = AsyncPersistenceTestConfiguration.class)
+class AsyncContainerStartupTest {
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbc;
+
+    @Autowired
+    private GenericContainer<?> redisContainer;
+
+    @Test
+    void shouldStartPostgresAlongsideOtherContainers() {
+        jdbc.update("INSERT INTO users (name) VALUES (:name)",
+                Map.of("name", "Sergey"));
+
+        assertThat(redisContainer.isRunning()).isTrue();
+    }
+}
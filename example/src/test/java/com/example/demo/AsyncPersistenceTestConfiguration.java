@@ -0,0 +1,56 @@
+package com.example.demo;
+
+import com.miro.persistence.tooling.core.FlywayMigrationSet;
+import com.miro.persistence.tooling.test.PostgreSQLTestContainerTool;
+import java.util.concurrent.CompletableFuture;
+import javax.sql.DataSource;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+/**
+ * Starts postgres in background, so the image resolution and the container start overlap with the start of the other
+ * containers and the creation of the other beans. The beans are created in the declaration order.
+ */
+@TestConfiguration
+public class AsyncPersistenceTestConfiguration {
+
+    private static final FlywayMigrationSet FLYWAY_MIGRATION_SET = FlywayMigrationSet.builder()
+            .migrationResourcesPath("db/migration")
+            .dockerImageName("postgres-it-example")
+            .build();
+
+    @Bean
+    public CompletableFuture<PostgreSQLContainer<?>> postgreSQLContainerFuture() {
+        return new PostgreSQLTestContainerTool()
+                .createStartedPostgreSQLContainerAsync(FLYWAY_MIGRATION_SET);
+    }
+
+    @Bean(initMethod = "start")
+    public GenericContainer<?> redisContainer() {
+        // started while postgres is bootstrapped in background
+        return new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+                .withExposedPorts(6379);
+    }
+
+    @Bean
+    public PostgreSQLContainer<?> postgreSQLContainer(
+            CompletableFuture<PostgreSQLContainer<?>> postgreSQLContainerFuture
+    ) {
+        // already started, stopped by spring on context shutdown
+        return postgreSQLContainerFuture.join();
+    }
+
+    @Bean
+    public DataSource dataSource(PostgreSQLContainer<?> postgreSQLContainer) {
+        return DockerDataSourceUtils.createDataSource("main", postgreSQLContainer, null);
+    }
+
+    @Bean
+    public NamedParameterJdbcTemplate namedParameterJdbcTemplate(DataSource dataSource) {
+        return new NamedParameterJdbcTemplate(dataSource);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.github.dockerjava.api.model.Container;
+import com.miro.persistence.tooling.core.FlywayMigrationSet;
+import com.miro.persistence.tooling.test.PostgreSQLTestContainerTool;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.DockerClientFactory;
+
+class ContainerPoolTest {
+
+    private static final FlywayMigrationSet FLYWAY_MIGRATION_SET = FlywayMigrationSet.builder()
+            .migrationResourcesPath("db/migration")
+            .dockerImageName("postgres-it-pool-example")
+            .build();
+
+    @Test
+    void shouldRefillPoolAfterLease() {
+        try (var pool = new PostgreSQLTestContainerTool().createPostgreSQLContainerPool(FLYWAY_MIGRATION_SET, 1)) {
+            var first = pool.lease();
+            var second = pool.lease();
+
+            assertThat(first.isRunning()).isTrue();
+            assertThat(second.isRunning()).isTrue();
+            assertThat(second.getContainerId()).isNotEqualTo(first.getContainerId());
+
+            pool.release(first);
+            pool.release(second);
+
+            assertThat(first.isRunning()).isFalse();
+            assertThat(second.isRunning()).isFalse();
+        }
+    }
+
+    @Test
+    void shouldStopPooledContainersOnClose() throws InterruptedException {
+        var pool = new PostgreSQLTestContainerTool().createPostgreSQLContainerPool(FLYWAY_MIGRATION_SET, 2);
+        var leased = pool.lease();
+        try {
+            pool.close();
+
+            assertThatThrownBy(pool::lease).isInstanceOf(IllegalStateException.class);
+            // the containers still starting are stopped as soon as they are started
+            var deadline = System.nanoTime() + 60_000_000_000L;
+            while (!getRunningContainerIds(leased.getDockerImageName()).equals(List.of(leased.getContainerId()))
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(500);
+            }
+            assertThat(getRunningContainerIds(leased.getDockerImageName())).containsExactly(leased.getContainerId());
+        } finally {
+            pool.release(leased);
+        }
+    }
+
+    private static List<String> getRunningContainerIds(String imageName) {
+        return DockerClientFactory.instance().client().listContainersCmd()
+                .withAncestorFilter(List.of(imageName))
+                .exec()
+                .stream()
+                .map(Container::getId)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.miro.persistence.tooling.core.FlywayMigrationSet;
+import com.miro.persistence.tooling.test.DirtyTableResetExtension;
+import com.miro.persistence.tooling.test.PostgreSQLTestContainerTool;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+class DirtyTableResetTest {
+
+    private static final FlywayMigrationSet FLYWAY_MIGRATION_SET = FlywayMigrationSet.builder()
+            .migrationResourcesPath("db/migration")
+            .dockerImageName("postgres-it-example")
+            .dirtyTableTracking(true)
+            .build();
+
+    private static final PostgreSQLContainer<?> CONTAINER = startContainer();
+
+    @RegisterExtension
+    static final DirtyTableResetExtension RESET = DirtyTableResetExtension.forContainer(CONTAINER);
+
+    @RepeatedTest(3)
+    void shouldSeeOnlyOwnUsers() throws SQLException {
+        try (Connection connection = CONTAINER.createConnection("");
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("INSERT INTO users (name) VALUES ('Sergey')");
+
+            try (ResultSet resultSet = statement.executeQuery("SELECT count(*), max(id) FROM users")) {
+                assertThat(resultSet.next()).isTrue();
+                assertThat(resultSet.getInt(1)).isEqualTo(1);
+                // identity is restarted too
+                assertThat(resultSet.getLong(2)).isEqualTo(1);
+            }
+        }
+    }
+
+    @SuppressWarnings("resource")
+    private static PostgreSQLContainer<?> startContainer() {
+        // stopped by testcontainers on JVM exit
+        var container = new PostgreSQLTestContainerTool().createPostgreSQLContainer(FLYWAY_MIGRATION_SET);
+        container.start();
+        return container;
+    }
+}
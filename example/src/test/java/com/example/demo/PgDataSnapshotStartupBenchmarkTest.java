@@ -0,0 +1,63 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.miro.persistence.tooling.core.FlywayMigrationSet;
+import com.miro.persistence.tooling.core.PostgresStateBackend;
+import com.miro.persistence.tooling.test.PostgreSQLTestContainerTool;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares container start time of the committed image vs the PGDATA snapshot extracted into the base image.
+ * Run with {@code -Dpersistence-tooling.benchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "persistence-tooling.benchmark", matches = "true")
+class PgDataSnapshotStartupBenchmarkTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PgDataSnapshotStartupBenchmarkTest.class);
+
+    private static final int ITERATIONS = 5;
+
+    @Test
+    void compareStartTime() throws SQLException {
+        var imageMillis = measureStartMillis(PostgresStateBackend.DOCKER_IMAGE);
+        var snapshotMillis = measureStartMillis(PostgresStateBackend.PGDATA_SNAPSHOT);
+
+        LOGGER.info("Average start time of {} iterations: committed image {} ms, PGDATA snapshot {} ms",
+                ITERATIONS, imageMillis, snapshotMillis);
+    }
+
+    private static long measureStartMillis(PostgresStateBackend stateBackend) throws SQLException {
+        var flywayMigrationSet = FlywayMigrationSet.builder()
+                .migrationResourcesPath("db/migration")
+                .dockerImageName("postgres-it-example")
+                .stateBackend(stateBackend)
+                .build();
+        var tool = new PostgreSQLTestContainerTool();
+        // warm-up: build the image or snapshot if missing
+        tool.createPostgreSQLContainer(flywayMigrationSet);
+
+        long totalNanos = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            try (var container = tool.createPostgreSQLContainer(flywayMigrationSet)) {
+                long startNanos = System.nanoTime();
+                container.start();
+                totalNanos += System.nanoTime() - startNanos;
+
+                try (Connection connection = container.createConnection("");
+                     Statement statement = connection.createStatement();
+                     ResultSet resultSet = statement.executeQuery("SELECT count(*) FROM users")) {
+                    assertThat(resultSet.next()).isTrue();
+                }
+            }
+        }
+        return totalNanos / ITERATIONS / 1_000_000;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.miro.persistence.tooling.core.BuildPhase;
+import com.miro.persistence.tooling.core.BuildPhaseEvent;
+import com.miro.persistence.tooling.core.BuildPhaseListener;
+import com.miro.persistence.tooling.core.FlywayMigrationSet;
+import com.miro.persistence.tooling.core.PostgresRuntimeMode;
+import com.miro.persistence.tooling.test.PostgreSQLTestContainerTool;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.utility.DockerImageName;
+
+/**
+ * Simulates two CI agents sharing the migration image via a local {@code registry:2}: the first one builds and pushes
+ * the image, the second one pulls it instead of building.
+ */
+class RegistryImageSharingTest {
+
+    @Test
+    void shouldPullImagePushedByAnotherAgent() {
+        try (var registry = new GenericContainer<>(DockerImageName.parse("registry:2")).withExposedPorts(5000)) {
+            registry.start();
+            var imageName = "localhost:" + registry.getMappedPort(5000) + "/postgres-it-registry-example";
+
+            var builtImage = new RegistryTool(imageName, false, true)
+                    .createPostgreSQLContainer(migrationSet(PostgresRuntimeMode.DEFAULT))
+                    .getDockerImageName();
+            assertThat(PostgreSQLTestContainerTool.awaitImagePushes(Duration.ofMinutes(1))).isTrue();
+            // the second agent has an empty local image store
+            DockerClientFactory.instance().client().removeImageCmd(builtImage).withForce(true).exec();
+
+            var secondAgent = new RegistryTool(imageName, true, false);
+            // different migration set instance (same image tag) to skip the JVM-wide cache of the resolved images
+            var pulledImage = secondAgent.createPostgreSQLContainer(migrationSet(PostgresRuntimeMode.TMPFS))
+                    .getDockerImageName();
+
+            assertThat(pulledImage).isEqualTo(builtImage);
+            assertThat(secondAgent.events)
+                    .anySatisfy(event -> {
+                        assertThat(event.getPhase()).isEqualTo(BuildPhase.REGISTRY_PULL);
+                        assertThat(event.getCacheHit()).isTrue();
+                    })
+                    .noneMatch(event -> event.getPhase() == BuildPhase.FLYWAY_MIGRATE);
+        }
+    }
+
+    private static FlywayMigrationSet migrationSet(PostgresRuntimeMode runtimeMode) {
+        return FlywayMigrationSet.builder()
+                .migrationResourcesPath("db/migration")
+                .dockerImageName("postgres-it-registry-example")
+                .runtimeMode(runtimeMode)
+                .build();
+    }
+
+    private static class RegistryTool extends PostgreSQLTestContainerTool {
+
+        private final String imageName;
+        private final boolean pull;
+        private final boolean push;
+        private final List<BuildPhaseEvent> events = new CopyOnWriteArrayList<>();
+
+        private RegistryTool(String imageName, boolean pull, boolean push) {
+            this.imageName = imageName;
+            this.pull = pull;
+            this.push = push;
+        }
+
+        @Override
+        protected String resolveImageName(FlywayMigrationSet flywayMigrationSet) {
+            return imageName;
+        }
+
+        @Override
+        protected boolean isRegistryPullEnabled(FlywayMigrationSet flywayMigrationSet) {
+            return pull;
+        }
+
+        @Override
+        protected boolean isRegistryPushEnabled(FlywayMigrationSet flywayMigrationSet) {
+            return push;
+        }
+
+        @Override
+        protected BuildPhaseListener getBuildPhaseListener() {
+            return events::add;
+        }
+    }
+}
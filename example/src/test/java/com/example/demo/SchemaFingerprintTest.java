@@ -0,0 +1,37 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.miro.persistence.tooling.core.FlywayMigrationSet;
+import com.miro.persistence.tooling.test.PostgreSQLTestContainerTool;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.junit.jupiter.api.Test;
+
+class SchemaFingerprintTest {
+
+    private static final FlywayMigrationSet FLYWAY_MIGRATION_SET = FlywayMigrationSet.builder()
+            .migrationResourcesPath("db/migration")
+            .dockerImageName("postgres-it-fingerprint-example")
+            .build();
+
+    @Test
+    void shouldDetectSchemaDrift() throws SQLException {
+        try (var container = new PostgreSQLTestContainerTool().createPostgreSQLContainer(FLYWAY_MIGRATION_SET)) {
+            container.start();
+
+            assertThatCode(() -> PostgreSQLTestContainerTool.verifySchemaFingerprint(container))
+                    .doesNotThrowAnyException();
+
+            try (Connection connection = container.createConnection("");
+                 Statement statement = connection.createStatement()) {
+                statement.execute("ALTER TABLE users ADD COLUMN email TEXT");
+            }
+            assertThatThrownBy(() -> PostgreSQLTestContainerTool.verifySchemaFingerprint(container))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("doesn't match");
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.miro.persistence.tooling.core.FlywayMigrationSet;
+import com.miro.persistence.tooling.core.SeedData;
+import com.miro.persistence.tooling.test.PostgreSQLTestContainerTool;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.junit.jupiter.api.Test;
+
+class SeedDataTest {
+
+    private static final FlywayMigrationSet FLYWAY_MIGRATION_SET = FlywayMigrationSet.builder()
+            .migrationResourcesPath("db/migration")
+            .dockerImageName("postgres-it-seed-example")
+            // ids don't overlap with the users_id_seq values
+            .seedData(SeedData.csv("users", "db/seed/users.csv"))
+            .build();
+
+    @Test
+    void shouldContainSeedData() throws SQLException {
+        try (var container = new PostgreSQLTestContainerTool().createPostgreSQLContainer(FLYWAY_MIGRATION_SET)) {
+            container.start();
+
+            try (Connection connection = container.createConnection("");
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT name FROM users ORDER BY id")) {
+                assertThat(resultSet.next()).isTrue();
+                assertThat(resultSet.getString(1)).isEqualTo("Alice");
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.miro.persistence.tooling.core.FlywayMigrationSet;
+import com.miro.persistence.tooling.test.PostgreSQLDatabase;
+import com.miro.persistence.tooling.test.PostgreSQLTemplateDatabasePool;
+import com.miro.persistence.tooling.test.PostgreSQLTestContainerTool;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+class TemplateDatabasePoolTest {
+
+    private static final FlywayMigrationSet FLYWAY_MIGRATION_SET = FlywayMigrationSet.builder()
+            .migrationResourcesPath("db/migration")
+            .dockerImageName("postgres-it-template-example")
+            .build();
+
+    @Test
+    void shouldServeIsolatedDatabases() throws SQLException {
+        try (var container = new PostgreSQLTestContainerTool().createPostgreSQLContainer(FLYWAY_MIGRATION_SET)) {
+            container.start();
+            try (var pool = PostgreSQLTemplateDatabasePool.create(container, 2)) {
+                var first = pool.acquire();
+                var second = pool.acquire();
+
+                execute(first, "INSERT INTO users (name) VALUES ('Sergey')");
+
+                assertThat(first.getDatabaseName()).isNotEqualTo(second.getDatabaseName());
+                assertThat(countUsers(first)).isEqualTo(1);
+                assertThat(countUsers(second)).isZero();
+            }
+        }
+    }
+
+    @Test
+    void shouldNotCollideWithOtherPoolOfSameContainer() throws SQLException {
+        try (var container = new PostgreSQLTestContainerTool().createPostgreSQLContainer(FLYWAY_MIGRATION_SET)) {
+            container.start();
+            try (var pool = PostgreSQLTemplateDatabasePool.create(container, 0);
+                 var otherPool = PostgreSQLTemplateDatabasePool.create(container, 0)) {
+                var database = pool.acquire();
+                var otherDatabase = otherPool.acquire();
+
+                assertThat(database.getDatabaseName()).isNotEqualTo(otherDatabase.getDatabaseName());
+                assertThat(database.getUsername()).isNotEqualTo(otherDatabase.getUsername());
+            }
+        }
+    }
+
+    @Test
+    void shouldDropReleasedDatabase() throws SQLException {
+        try (var container = new PostgreSQLTestContainerTool().createPostgreSQLContainer(FLYWAY_MIGRATION_SET)) {
+            container.start();
+            PostgreSQLDatabase database;
+            try (var pool = PostgreSQLTemplateDatabasePool.create(container, 0)) {
+                database = pool.acquire();
+                // an open connection doesn't prevent the drop
+                try (Connection connection = connect(database)) {
+                    pool.release(database);
+                    // close waits for the pending drops
+                    pool.close();
+                }
+            }
+
+            assertThat(databaseExists(container, database.getDatabaseName())).isFalse();
+        }
+    }
+
+    @Test
+    void shouldDropDatabaseReleasedAfterClose() throws SQLException {
+        try (var container = new PostgreSQLTestContainerTool().createPostgreSQLContainer(FLYWAY_MIGRATION_SET)) {
+            container.start();
+            var pool = PostgreSQLTemplateDatabasePool.create(container, 1);
+            var database = pool.acquire();
+            pool.close();
+
+            // acquired databases stay valid after close
+            assertThat(countUsers(database)).isZero();
+            pool.release(database);
+
+            assertThat(databaseExists(container, database.getDatabaseName())).isFalse();
+        }
+    }
+
+    private static Connection connect(PostgreSQLDatabase database) throws SQLException {
+        return DriverManager.getConnection(database.getJdbcUrl(), database.getUsername(), database.getPassword());
+    }
+
+    private static void execute(PostgreSQLDatabase database, String sql) throws SQLException {
+        try (Connection connection = connect(database);
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static int countUsers(PostgreSQLDatabase database) throws SQLException {
+        try (Connection connection = connect(database);
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT count(*) FROM users")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    private static boolean databaseExists(PostgreSQLContainer<?> container, String databaseName) throws SQLException {
+        var jdbcUrl = container.getJdbcUrl().replace("/" + container.getDatabaseName(), "/postgres");
+        try (Connection connection = DriverManager.getConnection(jdbcUrl, container.getUsername(),
+                container.getPassword());
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(
+                     "SELECT 1 FROM pg_database WHERE datname = '" + databaseName + "'")) {
+            return resultSet.next();
+        }
+    }
+}
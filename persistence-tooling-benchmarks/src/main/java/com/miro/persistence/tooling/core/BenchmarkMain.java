@@ -0,0 +1,29 @@
+package com.miro.persistence.tooling.core;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the standard JMH command line options and the gc profiler always enabled, so the
+ * allocation rate is reported next to the throughput:
+ * <pre>{@code
+ * java -jar persistence-tooling-benchmarks/target/benchmarks.jar ChecksumBenchmark -p migrationCount=1000
+ * }</pre>
+ */
+public final class BenchmarkMain {
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        var options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+    private BenchmarkMain() {
+    }
+}
@@ -0,0 +1,93 @@
+package com.miro.persistence.tooling.core;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.Resource;
+
+/**
+ * {@link FlywayChecksumUtils#calculateChecksum} and the migration scanning on synthetic migration sets. The checksum
+ * is measured with the per-file digest cache (warm, the files are not changed between invocations) and without it.
+ * Classpath locations are scanned once per class loader (see {@link MigrationCatalog}), so the checksum of them
+ * measures the hashing only, the scanning is measured separately.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChecksumBenchmark {
+
+    private static final String BASE_IMAGE_NAME = "postgres:15.4-alpine";
+
+    @Param({"100", "1000", "10000"})
+    public int migrationCount;
+
+    @Param({"CLASSPATH_DIR", "CLASSPATH_JAR", "FILESYSTEM"})
+    public SyntheticMigrations.Source source;
+
+    @Param({"true", "false"})
+    public boolean checksumCache;
+
+    private SyntheticMigrations migrations;
+
+    private String resourcesPath;
+
+    private ClassLoader classLoader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        migrations = SyntheticMigrations.create(migrationCount);
+        resourcesPath = migrations.getResourcesPath(source);
+        classLoader = migrations.createClassLoader(source);
+        System.setProperty(FlywayChecksumCache.CACHE_DIR_PROPERTY,
+                Files.createDirectories(migrations.getRoot().resolve("cache")).toString());
+        System.setProperty(FlywayChecksumCache.CACHE_ENABLED_PROPERTY, Boolean.toString(checksumCache));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.clearProperty(FlywayChecksumCache.CACHE_DIR_PROPERTY);
+        System.clearProperty(FlywayChecksumCache.CACHE_ENABLED_PROPERTY);
+        migrations.close();
+    }
+
+    @Benchmark
+    public String calculateChecksum() {
+        var thread = Thread.currentThread();
+        var contextClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+        try {
+            return FlywayChecksumUtils.calculateChecksum(BASE_IMAGE_NAME, null, resourcesPath);
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    @Benchmark
+    public List<Resource> scanMigrations() {
+        var thread = Thread.currentThread();
+        var contextClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+        try {
+            return MigrationCatalog.scan(resourcesPath);
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.miro.persistence.tooling.core;
+
+import java.util.concurrent.TimeUnit;
+import org.flywaydb.core.api.MigrationVersion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link FlywayVersionUtils#getVersion(String)}, called per migration file while sorting.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FlywayVersionUtilsBenchmark {
+
+    private final String[] fileNames = {
+            "V1__init.sql",
+            "V47__widgets_type_id_not_null.sql",
+            "V47_1__widgets_type_id_not_null.sql",
+            "V250_10__add_tools_restriction_to_workshop_mode_table.sql",
+    };
+
+    private int index;
+
+    @Benchmark
+    public MigrationVersion getVersion() {
+        var fileName = fileNames[index++ & (fileNames.length - 1)];
+        return FlywayVersionUtils.getVersion(fileName);
+    }
+}
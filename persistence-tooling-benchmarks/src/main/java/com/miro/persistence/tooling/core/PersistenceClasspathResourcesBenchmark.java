@@ -0,0 +1,29 @@
+package com.miro.persistence.tooling.core;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link PersistenceClasspathResources#readBytes(String)} of a resource packaged into the benchmarks jar, used to
+ * read the init scripts.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistenceClasspathResourcesBenchmark {
+
+    private static final String RESOURCE = "benchmark/init.sql";
+
+    @Benchmark
+    public byte[] readBytes() {
+        return PersistenceClasspathResources.readBytes(RESOURCE);
+    }
+}
@@ -0,0 +1,98 @@
+package com.miro.persistence.tooling.core;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * Generates migration sets of the given size in a temp directory, exposed as a classpath directory, as a jar or as a
+ * {@code filesystem:} location.
+ */
+final class SyntheticMigrations implements AutoCloseable {
+
+    static final String LOCATION = "db/migration";
+
+    enum Source {
+        CLASSPATH_DIR,
+        CLASSPATH_JAR,
+        FILESYSTEM
+    }
+
+    private final Path root;
+    private final Path classpathDir;
+    private final Path jar;
+
+    private SyntheticMigrations(Path root) {
+        this.root = root;
+        this.classpathDir = root.resolve("classes");
+        this.jar = root.resolve("migrations.jar");
+    }
+
+    static SyntheticMigrations create(int migrationCount) throws IOException {
+        var migrations = new SyntheticMigrations(Files.createTempDirectory("persistence-tooling-bench"));
+        var migrationDir = Files.createDirectories(migrations.classpathDir.resolve(LOCATION));
+        try (var jarOut = new JarOutputStream(Files.newOutputStream(migrations.jar))) {
+            // directory entries are required to resolve the location in the jar
+            jarOut.putNextEntry(new JarEntry("db/"));
+            jarOut.putNextEntry(new JarEntry(LOCATION + "/"));
+            for (int i = 1; i <= migrationCount; i++) {
+                var fileName = "V" + i + "__migration_" + i + ".sql";
+                var content = migrationContent(i);
+                Files.write(migrationDir.resolve(fileName), content);
+                jarOut.putNextEntry(new JarEntry(LOCATION + "/" + fileName));
+                jarOut.write(content);
+            }
+        }
+        return migrations;
+    }
+
+    private static byte[] migrationContent(int index) {
+        var sql = new StringBuilder()
+                .append("CREATE TABLE table_").append(index).append(" (\n")
+                .append("    id          BIGSERIAL PRIMARY KEY,\n");
+        for (int column = 0; column < 20; column++) {
+            sql.append("    column_").append(column).append(" VARCHAR(255) NOT NULL DEFAULT '',\n");
+        }
+        sql.append("    created_at  TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()\n")
+                .append(");\n\n")
+                .append("CREATE INDEX table_").append(index).append("_created_at_idx ON table_").append(index)
+                .append(" (created_at);\n");
+        return sql.toString().getBytes(UTF_8);
+    }
+
+    /**
+     * Migration resources path as passed to {@link FlywayChecksumUtils}.
+     */
+    String getResourcesPath(Source source) {
+        return source == Source.FILESYSTEM
+                ? "filesystem:" + classpathDir.resolve(LOCATION).toAbsolutePath()
+                : LOCATION;
+    }
+
+    /**
+     * Class loader to be set as the thread context class loader, the classpath resources are resolved via it.
+     */
+    ClassLoader createClassLoader(Source source) throws IOException {
+        var url = source == Source.CLASSPATH_JAR ? jar.toUri().toURL() : classpathDir.toUri().toURL();
+        return new URLClassLoader(new URL[]{url}, SyntheticMigrations.class.getClassLoader());
+    }
+
+    Path getRoot() {
+        return root;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,163 @@
+-- init script of a typical service database, read by PersistenceClasspathResourcesBenchmark
+
+CREATE EXTENSION IF NOT EXISTS pgcrypto;
+
+CREATE ROLE service_role_1 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_1;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_1;
+
+CREATE ROLE service_role_2 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_2;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_2;
+
+CREATE ROLE service_role_3 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_3;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_3;
+
+CREATE ROLE service_role_4 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_4;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_4;
+
+CREATE ROLE service_role_5 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_5;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_5;
+
+CREATE ROLE service_role_6 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_6;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_6;
+
+CREATE ROLE service_role_7 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_7;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_7;
+
+CREATE ROLE service_role_8 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_8;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_8;
+
+CREATE ROLE service_role_9 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_9;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_9;
+
+CREATE ROLE service_role_10 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_10;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_10;
+
+CREATE ROLE service_role_11 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_11;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_11;
+
+CREATE ROLE service_role_12 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_12;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_12;
+
+CREATE ROLE service_role_13 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_13;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_13;
+
+CREATE ROLE service_role_14 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_14;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_14;
+
+CREATE ROLE service_role_15 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_15;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_15;
+
+CREATE ROLE service_role_16 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_16;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_16;
+
+CREATE ROLE service_role_17 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_17;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_17;
+
+CREATE ROLE service_role_18 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_18;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_18;
+
+CREATE ROLE service_role_19 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_19;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_19;
+
+CREATE ROLE service_role_20 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_20;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_20;
+
+CREATE ROLE service_role_21 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_21;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_21;
+
+CREATE ROLE service_role_22 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_22;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_22;
+
+CREATE ROLE service_role_23 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_23;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_23;
+
+CREATE ROLE service_role_24 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_24;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_24;
+
+CREATE ROLE service_role_25 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_25;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_25;
+
+CREATE ROLE service_role_26 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_26;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_26;
+
+CREATE ROLE service_role_27 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_27;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_27;
+
+CREATE ROLE service_role_28 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_28;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_28;
+
+CREATE ROLE service_role_29 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_29;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_29;
+
+CREATE ROLE service_role_30 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_30;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_30;
+
+CREATE ROLE service_role_31 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_31;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_31;
+
+CREATE ROLE service_role_32 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_32;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_32;
+
+CREATE ROLE service_role_33 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_33;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_33;
+
+CREATE ROLE service_role_34 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_34;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_34;
+
+CREATE ROLE service_role_35 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_35;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_35;
+
+CREATE ROLE service_role_36 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_36;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_36;
+
+CREATE ROLE service_role_37 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_37;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_37;
+
+CREATE ROLE service_role_38 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_38;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_38;
+
+CREATE ROLE service_role_39 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_39;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_39;
+
+CREATE ROLE service_role_40 NOLOGIN;
+GRANT USAGE ON SCHEMA public TO service_role_40;
+ALTER DEFAULT PRIVILEGES IN SCHEMA public GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO service_role_40;
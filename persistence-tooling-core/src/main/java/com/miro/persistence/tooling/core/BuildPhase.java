@@ -0,0 +1,84 @@
+package com.miro.persistence.tooling.core;
+
+/**
+ * Timed phases of the image resolution and build, reported to {@link BuildPhaseListener}.
+ *
+ * @author Sergey Chernov
+ */
+public enum BuildPhase {
+
+    /**
+     * Calculation of the image tag from the migrations checksum.
+     */
+    CHECKSUM,
+
+    /**
+     * Lookup of the image (or PGDATA snapshot) with the calculated tag, a hit means no build is needed.
+     */
+    FIND_IMAGE,
+
+    /**
+     * Pull of the image with the calculated tag from the registry, a hit means no build is needed.
+     */
+    REGISTRY_PULL,
+
+    /**
+     * Waiting for the build lock, see {@code ImageBuildLockProvider}.
+     */
+    BUILD_LOCK_WAIT,
+
+    /**
+     * Pull of the base (or ancestor) image of the build container, a hit means the image is present locally.
+     */
+    BASE_IMAGE_PULL,
+
+    /**
+     * Start of the build container, including {@link #INIT_SCRIPTS}.
+     */
+    CONTAINER_START,
+
+    /**
+     * Execution of the init scripts in the build container.
+     */
+    INIT_SCRIPTS,
+
+    /**
+     * Flyway migrate in the build container.
+     */
+    FLYWAY_MIGRATE,
+
+    /**
+     * {@code COPY} of the seed data, see {@link FlywayMigrationSet#getSeedData()}.
+     */
+    SEED_LOAD,
+
+    /**
+     * Optional pre-commit compaction, see {@link PostgresContainerAdapter#withCompaction(boolean)}.
+     */
+    COMPACTION,
+
+    /**
+     * Checkpoint before the state is saved.
+     */
+    CHECKPOINT,
+
+    /**
+     * {@code docker commit} of the build container.
+     */
+    COMMIT,
+
+    /**
+     * Archiving of PGDATA, see {@link PostgresStateBackend#PGDATA_SNAPSHOT}.
+     */
+    SNAPSHOT_SAVE,
+
+    /**
+     * Background push of the built image to the registry.
+     */
+    REGISTRY_PUSH,
+
+    /**
+     * Start of the container returned to the test.
+     */
+    RUNTIME_START
+}
@@ -0,0 +1,103 @@
+package com.miro.persistence.tooling.core;
+
+import jakarta.annotation.Nullable;
+import java.time.Duration;
+
+/**
+ * Finished {@link BuildPhase} with its duration and the phase specific metrics, unknown or not applicable metrics are
+ * null.
+ *
+ * @author Sergey Chernov
+ */
+public final class BuildPhaseEvent {
+
+    private final BuildPhase phase;
+    private final String imageName;
+    private final Duration duration;
+    private final boolean success;
+    @Nullable
+    private final Boolean cacheHit;
+    @Nullable
+    private final Long imageSize;
+    @Nullable
+    private final Integer migrationCount;
+
+    BuildPhaseEvent(
+            BuildPhase phase,
+            String imageName,
+            Duration duration,
+            boolean success,
+            @Nullable Boolean cacheHit,
+            @Nullable Long imageSize,
+            @Nullable Integer migrationCount
+    ) {
+        this.phase = phase;
+        this.imageName = imageName;
+        this.duration = duration;
+        this.success = success;
+        this.cacheHit = cacheHit;
+        this.imageSize = imageSize;
+        this.migrationCount = migrationCount;
+    }
+
+    public BuildPhase getPhase() {
+        return phase;
+    }
+
+    /**
+     * Image the phase relates to: the resolved image for the lookup and save phases, the base image for the build
+     * container start.
+     */
+    public String getImageName() {
+        return imageName;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    /**
+     * False if the phase failed with an exception.
+     */
+    public boolean isSuccess() {
+        return success;
+    }
+
+    /**
+     * Whether the image (or the base image) was found, for {@link BuildPhase#FIND_IMAGE},
+     * {@link BuildPhase#REGISTRY_PULL} and {@link BuildPhase#BASE_IMAGE_PULL}.
+     */
+    @Nullable
+    public Boolean getCacheHit() {
+        return cacheHit;
+    }
+
+    /**
+     * Size in bytes of the image or PGDATA snapshot.
+     */
+    @Nullable
+    public Long getImageSize() {
+        return imageSize;
+    }
+
+    /**
+     * Number of the migrations, e.g. executed by {@link BuildPhase#FLYWAY_MIGRATE}.
+     */
+    @Nullable
+    public Integer getMigrationCount() {
+        return migrationCount;
+    }
+
+    @Override
+    public String toString() {
+        return "BuildPhaseEvent{" +
+            "phase=" + phase +
+            ", imageName='" + imageName + '\'' +
+            ", duration=" + duration +
+            ", success=" + success +
+            ", cacheHit=" + cacheHit +
+            ", imageSize=" + imageSize +
+            ", migrationCount=" + migrationCount +
+            '}';
+    }
+}
@@ -0,0 +1,75 @@
+package com.miro.persistence.tooling.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Receives the timings of the image resolution and build phases, e.g. to export them as CI metrics. Listeners are
+ * called synchronously from the building thread (or the background push thread), so they should be fast, exceptions
+ * thrown by listeners are logged and ignored.
+ * <p>
+ * Implementations registered in {@code META-INF/services/com.miro.persistence.tooling.core.BuildPhaseListener} are
+ * included into {@link #defaultListeners()}.
+ *
+ * @author Sergey Chernov
+ */
+@FunctionalInterface
+public interface BuildPhaseListener {
+
+    BuildPhaseListener NOOP = event -> {
+    };
+
+    void phaseFinished(BuildPhaseEvent event);
+
+    /**
+     * Listeners registered via {@link ServiceLoader} and the JDK Flight Recorder listener if JFR is available.
+     */
+    static List<BuildPhaseListener> defaultListeners() {
+        return DefaultBuildPhaseListeners.LISTENERS;
+    }
+
+    static BuildPhaseListener composite(List<BuildPhaseListener> listeners) {
+        if (listeners.isEmpty()) {
+            return NOOP;
+        }
+        if (listeners.size() == 1) {
+            return listeners.get(0);
+        }
+        List<BuildPhaseListener> copy = new ArrayList<>(listeners);
+        return event -> copy.forEach(listener -> listener.phaseFinished(event));
+    }
+
+    /**
+     * Holder of the lazily loaded default listeners.
+     */
+    final class DefaultBuildPhaseListeners {
+
+        private static final List<BuildPhaseListener> LISTENERS = load();
+
+        private static List<BuildPhaseListener> load() {
+            List<BuildPhaseListener> listeners = new ArrayList<>();
+            ServiceLoader.load(BuildPhaseListener.class).forEach(listeners::add);
+            if (isJfrAvailable()) {
+                listeners.add(new JfrBuildPhaseListener());
+            }
+            return Collections.unmodifiableList(listeners);
+        }
+
+        /**
+         * Probes JFR without loading {@link JfrBuildPhaseListener}, which links against {@code jdk.jfr}.
+         */
+        private static boolean isJfrAvailable() {
+            try {
+                Class.forName("jdk.jfr.Event", false, DefaultBuildPhaseListeners.class.getClassLoader());
+                return true;
+            } catch (ClassNotFoundException | LinkageError e) {
+                return false;
+            }
+        }
+
+        private DefaultBuildPhaseListeners() {
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.miro.persistence.tooling.core;
+
+import jakarta.annotation.Nullable;
+import java.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures a {@link BuildPhase} and reports it to the listener on {@link #close()}. The phase is reported as failed
+ * unless {@link #succeeded()} is called before close:
+ * <pre>{@code
+ * try (BuildPhaseTimer timer = BuildPhaseTimer.start(listener, BuildPhase.FIND_IMAGE, imageName)) {
+ *     Image image = findImage(imageName);
+ *     timer.cacheHit(image != null).succeeded();
+ * }
+ * }</pre>
+ *
+ * @author Sergey Chernov
+ */
+public final class BuildPhaseTimer implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BuildPhaseTimer.class);
+
+    private final BuildPhaseListener listener;
+    private final BuildPhase phase;
+    private final String imageName;
+    private final long startNanos = System.nanoTime();
+    private boolean success;
+    @Nullable
+    private Boolean cacheHit;
+    @Nullable
+    private Long imageSize;
+    @Nullable
+    private Integer migrationCount;
+
+    private BuildPhaseTimer(BuildPhaseListener listener, BuildPhase phase, String imageName) {
+        this.listener = listener;
+        this.phase = phase;
+        this.imageName = imageName;
+    }
+
+    public static BuildPhaseTimer start(BuildPhaseListener listener, BuildPhase phase, String imageName) {
+        return new BuildPhaseTimer(listener, phase, imageName);
+    }
+
+    public BuildPhaseTimer cacheHit(boolean cacheHit) {
+        this.cacheHit = cacheHit;
+        return this;
+    }
+
+    public BuildPhaseTimer imageSize(@Nullable Long imageSize) {
+        this.imageSize = imageSize;
+        return this;
+    }
+
+    public BuildPhaseTimer migrationCount(int migrationCount) {
+        this.migrationCount = migrationCount;
+        return this;
+    }
+
+    public BuildPhaseTimer succeeded() {
+        this.success = true;
+        return this;
+    }
+
+    @Override
+    public void close() {
+        BuildPhaseEvent event = new BuildPhaseEvent(phase, imageName, Duration.ofNanos(System.nanoTime() - startNanos),
+                success, cacheHit, imageSize, migrationCount);
+        try {
+            listener.phaseFinished(event);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Build phase listener failed on {}", event, e);
+        }
+    }
+}
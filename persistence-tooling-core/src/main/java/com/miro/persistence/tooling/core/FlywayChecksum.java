@@ -0,0 +1,64 @@
+package com.miro.persistence.tooling.core;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of the migration set checksum calculation: the image tag and the prefix manifest of the migrations.
+ *
+ * @author Sergey Chernov
+ * @see FlywayChecksumUtils#calculate(String, List, String, String)
+ */
+public final class FlywayChecksum {
+
+    private final String tag;
+    private final String latestVersion;
+    private final List<String> prefixDigests;
+
+    FlywayChecksum(String tag, String latestVersion, List<String> prefixDigests) {
+        this.tag = tag;
+        this.latestVersion = latestVersion;
+        this.prefixDigests = Collections.unmodifiableList(prefixDigests);
+    }
+
+    /**
+     * Docker image tag, e.g. "V2-33f7f7".
+     */
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * Chained digests of the migration prefixes in version order: the element {@code i} identifies the base image,
+     * the init scripts and the first {@code i + 1} migrations. An image built with the first {@code i + 1}
+     * migrations can be used as a starting point to apply the rest of them.
+     */
+    public List<String> getPrefixDigests() {
+        return prefixDigests;
+    }
+
+    public int getMigrationCount() {
+        return prefixDigests.size();
+    }
+
+    /**
+     * Labels to be stored on the image containing all migrations of this checksum.
+     */
+    public Map<String, String> toImageLabels() {
+        Map<String, String> labels = new LinkedHashMap<>();
+        labels.put(PersistenceImageLabels.MIGRATION_PREFIX_DIGEST, prefixDigests.get(prefixDigests.size() - 1));
+        labels.put(PersistenceImageLabels.MIGRATION_COUNT, Integer.toString(prefixDigests.size()));
+        labels.put(PersistenceImageLabels.MIGRATION_VERSION, latestVersion);
+        return labels;
+    }
+
+    @Override
+    public String toString() {
+        return "FlywayChecksum{" +
+                "tag='" + tag + '\'' +
+                ", migrationCount=" + prefixDigests.size() +
+                '}';
+    }
+}
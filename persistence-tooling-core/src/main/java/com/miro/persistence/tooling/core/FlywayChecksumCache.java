@@ -0,0 +1,204 @@
+package com.miro.persistence.tooling.core;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import jakarta.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.jar.JarEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+
+/**
+ * Persistent per-file digest cache used by {@link FlywayChecksumUtils}. Each migration location has its own cache file,
+ * entries are keyed by the resource URL and validated by the resource fingerprint:
+ * <ul>
+ *     <li>size, last modified time in nanoseconds and file key (inode) for the filesystem resources</li>
+ *     <li>size and CRC for the jar entries</li>
+ * </ul>
+ * Resources without a cheap fingerprint are always re-read. Filesystem resources modified less than
+ * {@value #RACY_INTERVAL_MILLIS} ms ago are not cached: the timestamp granularity of some filesystems is a second or
+ * more, so a file edited again right after the digest calculation may keep the same size and timestamp. The cache
+ * directory can be overridden via the {@value #CACHE_DIR_PROPERTY} system property, the cache can be disabled via
+ * {@value #CACHE_ENABLED_PROPERTY}.
+ *
+ * @author Sergey Chernov
+ */
+final class FlywayChecksumCache {
+
+    static final String CACHE_DIR_PROPERTY = "persistence-tooling.cache-dir";
+    static final String CACHE_ENABLED_PROPERTY = "persistence-tooling.checksum-cache.enabled";
+
+    static final long RACY_INTERVAL_MILLIS = 2000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FlywayChecksumCache.class);
+
+    @Nullable
+    private final Path cacheFile;
+    private final Map<String, String> previousEntries;
+    private final Map<String, String> currentEntries = new ConcurrentSkipListMap<>();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    private FlywayChecksumCache(@Nullable Path cacheFile, Map<String, String> previousEntries) {
+        this.cacheFile = cacheFile;
+        this.previousEntries = previousEntries;
+    }
+
+    /**
+     * Loads the cache of the migration location and digest algorithm, returns a non-persistent instance if the cache
+     * is disabled.
+     */
+    static FlywayChecksumCache load(String migrationResourcesPath, String algorithm) {
+        if (!Boolean.parseBoolean(System.getProperty(CACHE_ENABLED_PROPERTY, "true"))) {
+            return new FlywayChecksumCache(null, new TreeMap<>());
+        }
+        byte[] locationHash = FlywayChecksumUtils.sha1((algorithm + "\n" + migrationResourcesPath).getBytes(UTF_8));
+        Path cacheFile = getCacheDir().resolve("checksums-" + FlywayChecksumUtils.toHex(locationHash) + ".properties");
+        return new FlywayChecksumCache(cacheFile, readEntries(cacheFile));
+    }
+
+    static Path getCacheDir() {
+        String cacheDir = System.getProperty(CACHE_DIR_PROPERTY);
+        if (cacheDir != null) {
+            return Paths.get(cacheDir);
+        }
+        return Paths.get(System.getProperty("user.home"), ".cache", "persistence-tooling");
+    }
+
+    /**
+     * Returns the cached digest of the resource if its fingerprint is not changed, otherwise calculates a new one.
+     * Safe to be called concurrently.
+     */
+    String digest(Resource resource, Function<Resource, String> digestFunction) {
+        String key = getKey(resource);
+        String fingerprint = key == null ? null : getFingerprint(resource);
+        if (fingerprint == null) {
+            misses.incrementAndGet();
+            return digestFunction.apply(resource);
+        }
+
+        String previousEntry = previousEntries.get(key);
+        String digest;
+        if (previousEntry != null && previousEntry.startsWith(fingerprint + "/")) {
+            hits.incrementAndGet();
+            digest = previousEntry.substring(fingerprint.length() + 1);
+        } else {
+            misses.incrementAndGet();
+            digest = digestFunction.apply(resource);
+        }
+        currentEntries.put(key, fingerprint + "/" + digest);
+        return digest;
+    }
+
+    int getHits() {
+        return hits.get();
+    }
+
+    int getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Stores the entries used by the current calculation, stale entries are dropped. The file is replaced
+     * atomically, so concurrent processes never observe a partially written cache.
+     */
+    void save() {
+        if (cacheFile == null || currentEntries.equals(previousEntries)) {
+            return;
+        }
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            Path tempFile = Files.createTempFile(cacheFile.getParent(), cacheFile.getFileName().toString(), ".tmp");
+            Properties properties = new Properties();
+            properties.putAll(currentEntries);
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                properties.store(out, "persistence-tooling checksum cache");
+            }
+            Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | UncheckedIOException e) {
+            // the cache is an optimization only
+            LOGGER.warn("Failed to save checksum cache {}", cacheFile, e);
+        }
+    }
+
+    private static Map<String, String> readEntries(Path cacheFile) {
+        Map<String, String> entries = new TreeMap<>();
+        if (!Files.isRegularFile(cacheFile)) {
+            return entries;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(cacheFile)) {
+            properties.load(in);
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.warn("Failed to read checksum cache {}, ignoring it", cacheFile, e);
+            return entries;
+        }
+        properties.stringPropertyNames().forEach(name -> entries.put(name, properties.getProperty(name)));
+        return entries;
+    }
+
+    @Nullable
+    private static String getKey(Resource resource) {
+        try {
+            return resource.getURL().toString();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private static String getFingerprint(Resource resource) {
+        try {
+            if (resource.isFile()) {
+                return getFileFingerprint(resource.getFile().toPath());
+            }
+            URL url = resource.getURL();
+            URLConnection connection = url.openConnection();
+            if (connection instanceof JarURLConnection) {
+                JarEntry jarEntry = ((JarURLConnection) connection).getJarEntry();
+                if (jarEntry != null && jarEntry.getCrc() != -1) {
+                    return jarEntry.getSize() + ":crc" + Long.toHexString(jarEntry.getCrc());
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Failed to fingerprint resource {}", resource, e);
+        }
+        return null;
+    }
+
+    /**
+     * Returns null for the recently modified ("racy") file, its digest is calculated but not cached.
+     */
+    @Nullable
+    private static String getFileFingerprint(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        FileTime lastModified = attributes.lastModifiedTime();
+        if (lastModified.toMillis() > System.currentTimeMillis() - RACY_INTERVAL_MILLIS) {
+            LOGGER.debug("File {} is modified recently, its digest is not cached", path);
+            return null;
+        }
+        Object fileKey = attributes.fileKey();
+        return attributes.size() + ":" + lastModified.to(TimeUnit.NANOSECONDS)
+                + (fileKey == null ? "" : ":" + fileKey);
+    }
+}
@@ -1,116 +1,252 @@
 package com.miro.persistence.tooling.core;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static java.util.Comparator.comparing;
-import static java.util.Comparator.naturalOrder;
 
 import jakarta.annotation.Nullable;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.UncheckedIOException;
 import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Arrays;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.stream.Collectors;
 import org.flywaydb.core.api.MigrationVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.core.io.DefaultResourceLoader;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
-import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
-import org.springframework.core.io.support.ResourcePatternResolver;
-import org.springframework.util.StreamUtils;
 
 /**
  * @author Sergey Chernov
  */
 public final class FlywayChecksumUtils {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(FlywayChecksumUtils.class);
+
     /**
-     * Flyway style of file prefix
+     * Default digest algorithm of the checksum.
      */
-    private static final String FILESYSTEM_PREFIX = "filesystem:";
+    public static final String DEFAULT_DIGEST_ALGORITHM = "SHA-1";
+
+    /**
+     * Calculate checksum from migration files & base image name using {@value #DEFAULT_DIGEST_ALGORITHM} digest.
+     *
+     * @see #calculateChecksum(String, List, String, String)
+     */
+    public static String calculateChecksum(
+            String baseImageName,
+            @Nullable List<String> initScriptPaths,
+            String migrationResourcesPath
+    ) {
+        return calculateChecksum(baseImageName, initScriptPaths, migrationResourcesPath, DEFAULT_DIGEST_ALGORITHM);
+    }
 
     /**
      * Calculate checksum from migration files & base image name. Consists of two parts separated by dash:
      * <ul>
      *     <li>last migration file version, e.g. "300_1"</li>
-     *     <li>first 6 hex digits of SHA-1 hash sum of all migration files & base image name</li>
+     *     <li>first 6 hex digits of the hash sum of all migration files & base image name</li>
      * </ul>
      *
      * @param baseImageName          Name of base image user to
      * @param initScriptPaths        Paths to init scripts to be used in checksum calculation
      * @param migrationResourcesPath Path to migration files
+     * @param digestAlgorithm        {@link MessageDigest} algorithm name, e.g. "SHA-1" or "SHA-512/256"
      * @return Checksum
+     * @see #calculate(String, List, String, String)
      */
     public static String calculateChecksum(
             String baseImageName,
             @Nullable List<String> initScriptPaths,
-            String migrationResourcesPath
+            String migrationResourcesPath,
+            String digestAlgorithm
+    ) {
+        return calculate(baseImageName, initScriptPaths, migrationResourcesPath, digestAlgorithm).getTag();
+    }
+
+    /**
+     * Calculate checksum from migration files & base image name, see
+     * {@link #calculateChecksum(String, List, String, String)} for the tag format. Additionally, the result contains
+     * chained digests of the migration prefixes, which identify the images usable for the incremental build.
+     * <p>
+     * Migration files are hashed in parallel and combined in version order into a Merkle root (see
+     * {@link MigrationDigester}). Per-file digests are cached on disk (see {@link FlywayChecksumCache}), so only
+     * changed files are re-read.
+     */
+    public static FlywayChecksum calculate(
+            String baseImageName,
+            @Nullable List<String> initScriptPaths,
+            String migrationResourcesPath,
+            String digestAlgorithm
+    ) {
+        return calculate(baseImageName, initScriptPaths, MigrationCatalog.of(migrationResourcesPath), digestAlgorithm);
+    }
+
+    /**
+     * Calculate checksum of the migrations catalog, see {@link #calculate(String, List, String, String)}.
+     */
+    public static FlywayChecksum calculate(
+            String baseImageName,
+            @Nullable List<String> initScriptPaths,
+            MigrationCatalog catalog,
+            String digestAlgorithm
+    ) {
+        return calculate(baseImageName, initScriptPaths, catalog, Collections.emptyList(), digestAlgorithm);
+    }
+
+    /**
+     * Calculate checksum of the migration set, see {@link #calculate(String, List, String, String)}. The build stages
+     * changing the image content (the seed data and the dirty table tracking) are part of the hash and of the prefix
+     * digests.
+     */
+    public static FlywayChecksum calculate(String baseImageName, FlywayMigrationSet flywayMigrationSet) {
+        List<String> buildStageDigests = new ArrayList<>();
+        if (!flywayMigrationSet.getSeedData().isEmpty()) {
+            buildStageDigests.add(digestSeedData(flywayMigrationSet));
+        }
+        if (flywayMigrationSet.isDirtyTableTracking()) {
+            buildStageDigests.add("dirty-table-tracking");
+        }
+        return calculate(baseImageName, flywayMigrationSet.getInitScriptPaths(),
+                MigrationCatalog.of(flywayMigrationSet.getMigrationResourcesPath()),
+                flywayMigrationSet.getSchemaMigrations(), buildStageDigests, flywayMigrationSet.getChecksumAlgorithm());
+    }
+
+    /**
+     * Calculate checksum of the migrations catalog and the migrations of the independent schemas. The version of the
+     * tag is the latest version of the catalog, the schema migrations are part of the hash and of the prefix digests
+     * (so an ancestor image has the same schema migrations). Without schema migrations the result is the same as of
+     * {@link #calculate(String, List, MigrationCatalog, String)}.
+     */
+    public static FlywayChecksum calculate(
+            String baseImageName,
+            @Nullable List<String> initScriptPaths,
+            MigrationCatalog catalog,
+            List<SchemaMigrations> schemaMigrations,
+            String digestAlgorithm
+    ) {
+        return calculate(baseImageName, initScriptPaths, catalog, schemaMigrations, Collections.emptyList(),
+                digestAlgorithm);
+    }
+
+    private static FlywayChecksum calculate(
+            String baseImageName,
+            @Nullable List<String> initScriptPaths,
+            MigrationCatalog catalog,
+            List<SchemaMigrations> schemaMigrations,
+            List<String> buildStageDigests,
+            String digestAlgorithm
     ) {
         Objects.requireNonNull(baseImageName, "baseImageName is null");
-        List<Resource> resources = getMigrations(migrationResourcesPath);
-        MigrationVersion latestVersion = getLatestVersion(migrationResourcesPath, resources);
+        MigrationDigester digester = new MigrationDigester(digestAlgorithm);
+        String migrationResourcesPath = catalog.getLocation();
+        MigrationVersion latestVersion = catalog.getLatestVersion();
 
-        MessageDigest sha1 = sha1();
-        sha1.update((baseImageName + "\n").getBytes(UTF_8));
+        FlywayChecksumCache cache = FlywayChecksumCache.load(migrationResourcesPath, digestAlgorithm);
+        MessageDigest digest = digester.newDigest();
+        MessageDigest prefixDigest = digester.newDigest();
+        digest.update((baseImageName + "\n").getBytes(UTF_8));
+        prefixDigest.update((baseImageName + "\n").getBytes(UTF_8));
         if (initScriptPaths != null) {
             ResourceLoader resourceLoader = new DefaultResourceLoader();
-            initScriptPaths.forEach(path -> updateDigest(sha1, resourceLoader.getResource(adaptResourcePath(path))));
+            initScriptPaths.forEach(path -> {
+                String initScriptDigest =
+                        cache.digest(resourceLoader.getResource(MigrationCatalog.adaptResourcePath(path)),
+                                digester::digest);
+                updateDigest(digest, initScriptDigest);
+                updateDigest(prefixDigest, initScriptDigest);
+            });
+        }
+        if (!schemaMigrations.isEmpty()) {
+            String schemaMigrationsDigest = digestSchemaMigrations(digester, schemaMigrations);
+            updateDigest(digest, schemaMigrationsDigest);
+            updateDigest(prefixDigest, schemaMigrationsDigest);
+        }
+        buildStageDigests.forEach(buildStageDigest -> {
+            updateDigest(digest, buildStageDigest);
+            updateDigest(prefixDigest, buildStageDigest);
+        });
+        List<Resource> sortedResources = catalog.getEntries().stream()
+                .map(MigrationCatalog.Entry::getResource)
+                .collect(Collectors.toList());
+        List<String> migrationDigests = digester.digestAll(sortedResources,
+                resource -> cache.digest(resource, digester::digest));
+        updateDigest(digest, digester.merkleRoot(migrationDigests));
+        cache.save();
+        LOGGER.info("Checksum of [{}] calculated, per-file digest cache hits: {}, misses: {}",
+                migrationResourcesPath, cache.getHits(), cache.getMisses());
+
+        // h(i) = digest(h(i - 1), migration(i)), h(-1) = digest(base image, init scripts)
+        List<String> prefixDigests = new ArrayList<>(migrationDigests.size());
+        String previousPrefixDigest = toHex(prefixDigest.digest());
+        for (String migrationDigest : migrationDigests) {
+            MessageDigest chainDigest = digester.newDigest();
+            updateDigest(chainDigest, previousPrefixDigest);
+            updateDigest(chainDigest, migrationDigest);
+            previousPrefixDigest = toHex(chainDigest.digest());
+            prefixDigests.add(previousPrefixDigest);
         }
-        resources.stream()
-                .sorted(comparing(resource -> FlywayVersionUtils.getVersion(resource.getFilename())))
-                .forEach(resource -> updateDigest(sha1, resource));
 
         // note: "-" is used as a separator, because "~" is not allowed by docker
-        return "V" + latestVersion.toString().replace('.', '_') + "-" + digestFirst6(sha1);
+        String tag = "V" + latestVersion.toString().replace('.', '_') + "-" + digestFirst6(digest);
+        return new FlywayChecksum(tag, latestVersion.toString(), prefixDigests);
     }
 
-    private static String adaptResourcePath(String resourcePath) {
-        String resourcePathToUse = resourcePath;
-        if (resourcePathToUse.startsWith(FILESYSTEM_PREFIX)) {
-            // spring style vs flyway style
-            resourcePathToUse = "file:" + resourcePathToUse.substring(FILESYSTEM_PREFIX.length());
+    private static String digestSchemaMigrations(MigrationDigester digester, List<SchemaMigrations> schemaMigrations) {
+        MessageDigest digest = digester.newDigest();
+        for (SchemaMigrations migrations : schemaMigrations) {
+            MigrationCatalog catalog = MigrationCatalog.of(migrations.getMigrationResourcesPath());
+            FlywayChecksumCache cache = FlywayChecksumCache.load(catalog.getLocation(), digester.getAlgorithm());
+            List<Resource> resources = catalog.getEntries().stream()
+                    .map(MigrationCatalog.Entry::getResource)
+                    .collect(Collectors.toList());
+            List<String> migrationDigests = digester.digestAll(resources,
+                    resource -> cache.digest(resource, digester::digest));
+            cache.save();
+            digest.update((migrations.getSchema() + "\n" + migrations.getFlywayTable() + "\n").getBytes(UTF_8));
+            updateDigest(digest, digester.merkleRoot(migrationDigests));
         }
-        return resourcePathToUse;
+        return toHex(digest.digest());
     }
 
-    private static List<Resource> getMigrations(String resourcePath) {
-        String resourcePathToUse = adaptResourcePath(resourcePath);
-        ResourcePatternResolver resourcePatternResolver = new PathMatchingResourcePatternResolver();
-        try {
-            return Arrays.asList(resourcePatternResolver.getResources(resourcePathToUse + "/*.sql"));
-        } catch (IOException e) {
-            throw new UncheckedIOException("Error while listing resources:" + resourcePath, e);
+    private static String digestSeedData(FlywayMigrationSet flywayMigrationSet) {
+        MigrationDigester digester = new MigrationDigester(flywayMigrationSet.getChecksumAlgorithm());
+        // the seed files may be large, their digests are cached like the ones of the migrations
+        FlywayChecksumCache cache = FlywayChecksumCache.load(
+                "seed-data:" + flywayMigrationSet.getMigrationResourcesPath(), digester.getAlgorithm());
+        List<SeedData> seedData = flywayMigrationSet.getSeedData();
+        List<String> fileDigests = digester.digestAll(seedData,
+                seed -> cache.digest(seed.getResource(), digester::digest));
+        cache.save();
+        MessageDigest digest = digester.newDigest();
+        for (int i = 0; i < seedData.size(); i++) {
+            SeedData seed = seedData.get(i);
+            digest.update((seed.getTable() + "\n" + seed.getFormat() + "\n").getBytes(UTF_8));
+            updateDigest(digest, fileDigests.get(i));
         }
+        return toHex(digest.digest());
     }
 
-    private static MigrationVersion getLatestVersion(String resourcePath, Collection<Resource> resources) {
-        return resources.stream()
-                .map(resource -> Objects.requireNonNull(resource.getFilename(), resource + " fileName is null"))
-                .map(FlywayVersionUtils::getVersion)
-                .max(naturalOrder())
-                .orElseThrow(() -> new IllegalStateException("Migrations list is empty for [" + resourcePath + "]"));
-    }
-
-    private static MessageDigest sha1() {
+    static byte[] sha1(byte[] content) {
         try {
-            return MessageDigest.getInstance("SHA-1");
+            return MessageDigest.getInstance("SHA-1").digest(content);
         } catch (NoSuchAlgorithmException e) {
             throw new IllegalStateException(e);
         }
     }
 
-    private static void updateDigest(MessageDigest digest, Resource resource) {
-        digest.update((resource.getFilename() + "\n").getBytes(UTF_8));
-        try (InputStream in = resource.getInputStream()) {
-            byte[] content = StreamUtils.copyToByteArray(in);
-            digest.update(content);
-        } catch (IOException e) {
-            throw new UncheckedIOException("Error while reading " + resource, e);
+    private static void updateDigest(MessageDigest digest, String hexDigest) {
+        digest.update((hexDigest + "\n").getBytes(UTF_8));
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
         }
+        return sb.toString();
     }
 
     private static String digestFirst6(MessageDigest digest) {
@@ -21,6 +21,15 @@ public class FlywayMigrationSet {
     private final String dockerImageName;
     private final List<String> initScriptPaths;
     private final String flywayTable;
+    private final String checksumAlgorithm;
+    private final boolean incrementalBuild;
+    private final PostgresBuildProfile buildProfile;
+    private final boolean compactBeforeCommit;
+    private final PostgresStateBackend stateBackend;
+    private final PostgresRuntimeMode runtimeMode;
+    private final List<SchemaMigrations> schemaMigrations;
+    private final boolean dirtyTableTracking;
+    private final List<SeedData> seedData;
 
     private FlywayMigrationSet(Builder builder) {
         this.schema = builder.schema;
@@ -29,6 +38,15 @@ public class FlywayMigrationSet {
         this.dockerImageName = Objects.requireNonNull(builder.dockerImageName, "dockerImageName is null");
         this.initScriptPaths = builder.initScriptPaths;
         this.flywayTable = Objects.requireNonNull(builder.flywayTable, "flywayTable is null");
+        this.checksumAlgorithm = Objects.requireNonNull(builder.checksumAlgorithm, "checksumAlgorithm is null");
+        this.incrementalBuild = builder.incrementalBuild;
+        this.buildProfile = Objects.requireNonNull(builder.buildProfile, "buildProfile is null");
+        this.compactBeforeCommit = builder.compactBeforeCommit;
+        this.stateBackend = Objects.requireNonNull(builder.stateBackend, "stateBackend is null");
+        this.runtimeMode = Objects.requireNonNull(builder.runtimeMode, "runtimeMode is null");
+        this.schemaMigrations = Collections.unmodifiableList(new ArrayList<>(builder.schemaMigrations));
+        this.dirtyTableTracking = builder.dirtyTableTracking;
+        this.seedData = Collections.unmodifiableList(new ArrayList<>(builder.seedData));
     }
 
     public static Builder builder() {
@@ -61,9 +79,79 @@ public class FlywayMigrationSet {
         return flywayTable;
     }
 
+    /**
+     * {@link java.security.MessageDigest} algorithm used to calculate the image tag checksum.
+     */
+    public String getChecksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    /**
+     * If enabled, a missing image is built from the local image with the longest matching migration prefix, so
+     * only the new migrations are applied.
+     */
+    public boolean isIncrementalBuild() {
+        return incrementalBuild;
+    }
+
+    /**
+     * Postgres settings used while the migrations are replayed, they don't affect the saved image.
+     */
+    public PostgresBuildProfile getBuildProfile() {
+        return buildProfile;
+    }
+
+    /**
+     * If enabled, the database is vacuumed and WAL is trimmed before the image is committed, which makes the image
+     * smaller, but the build slower.
+     */
+    public boolean isCompactBeforeCommit() {
+        return compactBeforeCommit;
+    }
+
+    /**
+     * How the migrated state is persisted: docker image (default) or local PGDATA snapshot.
+     */
+    public PostgresStateBackend getStateBackend() {
+        return stateBackend;
+    }
+
+    /**
+     * How the containers of the migrated database run, e.g. with PGDATA on tmpfs.
+     */
+    public PostgresRuntimeMode getRuntimeMode() {
+        return runtimeMode;
+    }
+
+    /**
+     * Migrations of the independent schemas, applied concurrently with the main migrations over separate connections.
+     * All of them are part of the image tag.
+     */
+    public List<SchemaMigrations> getSchemaMigrations() {
+        return schemaMigrations;
+    }
+
+    /**
+     * Whether the image has the triggers recording the tables modified by tests, see
+     * {@code DirtyTableResetExtension}. Part of the image tag.
+     */
+    public boolean isDirtyTableTracking() {
+        return dirtyTableTracking;
+    }
+
+    /**
+     * Data loaded after the migrations, part of the image tag.
+     */
+    public List<SeedData> getSeedData() {
+        return seedData;
+    }
+
     public static class Builder {
 
         private final List<String> initScriptPaths = new ArrayList<>();
+        private final List<SchemaMigrations> schemaMigrations = new ArrayList<>();
+        private boolean dirtyTableTracking;
+        private final List<SeedData> seedData = new ArrayList<>();
 
         @Nullable
         private String schema;
@@ -71,6 +159,12 @@ public class FlywayMigrationSet {
         private String baseDockerImageName;
         private String dockerImageName;
         private String flywayTable = "schema_version";
+        private String checksumAlgorithm = FlywayChecksumUtils.DEFAULT_DIGEST_ALGORITHM;
+        private boolean incrementalBuild = true;
+        private PostgresBuildProfile buildProfile = PostgresBuildProfile.THROUGHPUT;
+        private boolean compactBeforeCommit;
+        private PostgresStateBackend stateBackend = PostgresStateBackend.DOCKER_IMAGE;
+        private PostgresRuntimeMode runtimeMode = PostgresRuntimeMode.DEFAULT;
 
         public Builder schema(String schema) {
             this.schema = schema;
@@ -102,11 +196,98 @@ public class FlywayMigrationSet {
             return this;
         }
 
+        public Builder checksumAlgorithm(String checksumAlgorithm) {
+            this.checksumAlgorithm = checksumAlgorithm;
+            return this;
+        }
+
+        public Builder incrementalBuild(boolean incrementalBuild) {
+            this.incrementalBuild = incrementalBuild;
+            return this;
+        }
+
+        public Builder buildProfile(PostgresBuildProfile buildProfile) {
+            this.buildProfile = buildProfile;
+            return this;
+        }
+
+        public Builder compactBeforeCommit(boolean compactBeforeCommit) {
+            this.compactBeforeCommit = compactBeforeCommit;
+            return this;
+        }
+
+        public Builder stateBackend(PostgresStateBackend stateBackend) {
+            this.stateBackend = stateBackend;
+            return this;
+        }
+
+        public Builder runtimeMode(PostgresRuntimeMode runtimeMode) {
+            this.runtimeMode = runtimeMode;
+            return this;
+        }
+
+        public Builder schemaMigrations(SchemaMigrations... schemaMigrations) {
+            Collections.addAll(this.schemaMigrations, schemaMigrations);
+            return this;
+        }
+
+        /**
+         * Installs statement-level triggers recording the tables modified by tests after the migrations, so only those
+         * tables are truncated between the tests. Disabled by default, the image is not changed then.
+         */
+        public Builder dirtyTableTracking(boolean dirtyTableTracking) {
+            this.dirtyTableTracking = dirtyTableTracking;
+            return this;
+        }
+
+        /**
+         * Data files streamed into the tables via {@code COPY} after the migrations, the tables are loaded in parallel
+         * with the foreign keys and triggers disabled and the secondary indexes rebuilt after the load. Images with
+         * seed data are never built incrementally, because the ancestor image already contains the data.
+         */
+        public Builder seedData(SeedData... seedData) {
+            Collections.addAll(this.seedData, seedData);
+            return this;
+        }
+
         public FlywayMigrationSet build() {
             return new FlywayMigrationSet(this);
         }
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FlywayMigrationSet)) {
+            return false;
+        }
+        FlywayMigrationSet that = (FlywayMigrationSet) o;
+        return incrementalBuild == that.incrementalBuild
+                && Objects.equals(schema, that.schema)
+                && migrationResourcesPath.equals(that.migrationResourcesPath)
+                && Objects.equals(baseDockerImageName, that.baseDockerImageName)
+                && dockerImageName.equals(that.dockerImageName)
+                && initScriptPaths.equals(that.initScriptPaths)
+                && flywayTable.equals(that.flywayTable)
+                && checksumAlgorithm.equals(that.checksumAlgorithm)
+                && buildProfile == that.buildProfile
+                && compactBeforeCommit == that.compactBeforeCommit
+                && stateBackend == that.stateBackend
+                && runtimeMode == that.runtimeMode
+                && schemaMigrations.equals(that.schemaMigrations)
+                && dirtyTableTracking == that.dirtyTableTracking
+                && seedData.equals(that.seedData);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(schema, migrationResourcesPath, baseDockerImageName, dockerImageName, initScriptPaths,
+                flywayTable, checksumAlgorithm, incrementalBuild, buildProfile, compactBeforeCommit, stateBackend,
+                runtimeMode, schemaMigrations, dirtyTableTracking, seedData);
+    }
+
     @Override
     public String toString() {
         return "FlywayMigrationSet{" +
@@ -115,6 +296,15 @@ public class FlywayMigrationSet {
             ", dockerImageName='" + dockerImageName + '\'' +
             ", initScriptPaths='" + initScriptPaths + '\'' +
             ", flywayTable='" + flywayTable + '\'' +
+            ", checksumAlgorithm='" + checksumAlgorithm + '\'' +
+            ", incrementalBuild=" + incrementalBuild +
+            ", buildProfile=" + buildProfile +
+            ", compactBeforeCommit=" + compactBeforeCommit +
+            ", stateBackend=" + stateBackend +
+            ", runtimeMode=" + runtimeMode +
+            ", schemaMigrations=" + schemaMigrations +
+            ", dirtyTableTracking=" + dirtyTableTracking +
+            ", seedData=" + seedData +
             '}';
     }
 }
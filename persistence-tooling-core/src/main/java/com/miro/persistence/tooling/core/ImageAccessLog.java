@@ -0,0 +1,79 @@
+package com.miro.persistence.tooling.core;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local log of the image usage, used by {@link ImageGarbageCollector} to keep the recently used images. Image labels
+ * can't be updated after commit, so the last use is stored as the modification time of an empty marker file per tag in
+ * the cache directory ({@code persistence-tooling.cache-dir} system property), which is safe for concurrent processes.
+ *
+ * @author Sergey Chernov
+ */
+public final class ImageAccessLog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImageAccessLog.class);
+
+    /**
+     * Records the use of the image now. Failures are logged, because the log is an optimization only.
+     */
+    public static void recordAccess(String imageName, String tag) {
+        Path marker = getLogDir(imageName).resolve(tag);
+        try {
+            Files.createDirectories(marker.getParent());
+            if (!Files.exists(marker)) {
+                Files.createFile(marker);
+            }
+            Files.setLastModifiedTime(marker, FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            LOGGER.warn("Failed to record access of image [{}:{}]", imageName, tag, e);
+        }
+    }
+
+    /**
+     * Returns the last access time by tag.
+     */
+    public static Map<String, Instant> getLastAccess(String imageName) {
+        Map<String, Instant> lastAccess = new HashMap<>();
+        try (DirectoryStream<Path> markers = Files.newDirectoryStream(getLogDir(imageName))) {
+            for (Path marker : markers) {
+                lastAccess.put(marker.getFileName().toString(), Files.getLastModifiedTime(marker).toInstant());
+            }
+        } catch (NoSuchFileException e) {
+            // nothing recorded yet
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read access log of image [" + imageName + "]", e);
+        }
+        return lastAccess;
+    }
+
+    /**
+     * Removes the record of the deleted image.
+     */
+    static void remove(String imageName, String tag) {
+        try {
+            Files.deleteIfExists(getLogDir(imageName).resolve(tag));
+        } catch (IOException e) {
+            LOGGER.warn("Failed to remove access record of image [{}:{}]", imageName, tag, e);
+        }
+    }
+
+    private static Path getLogDir(String imageName) {
+        return FlywayChecksumCache.getCacheDir()
+                .resolve("image-access")
+                .resolve(imageName.replaceAll("[^A-Za-z0-9._-]", "_"));
+    }
+
+    private ImageAccessLog() {
+    }
+}
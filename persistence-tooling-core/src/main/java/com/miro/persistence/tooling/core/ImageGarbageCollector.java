@@ -0,0 +1,178 @@
+package com.miro.persistence.tooling.core;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.model.Image;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.DockerClientFactory;
+
+/**
+ * Removes the local images of a name according to the {@link ImageRetentionPolicy}.
+ *
+ * @author Sergey Chernov
+ */
+public final class ImageGarbageCollector {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImageGarbageCollector.class);
+
+    /**
+     * @return removed image tags, e.g. "postgres-it:V2-33f7f7"
+     */
+    public static List<String> collect(String imageName, ImageRetentionPolicy policy) {
+        return collect(imageName, policy, Collections.emptySet());
+    }
+
+    /**
+     * @param protectedTags tags which are never removed, e.g. the tag being used right now
+     * @return removed image tags, e.g. "postgres-it:V2-33f7f7"
+     */
+    @SuppressWarnings("resource")
+    public static List<String> collect(String imageName, ImageRetentionPolicy policy,
+            Collection<String> protectedTags) {
+        DockerClient dockerClient = DockerClientFactory.instance().client();
+        List<Image> images = dockerClient.listImagesCmd().withImageNameFilter(imageName).exec();
+        Map<String, Instant> lastAccess = ImageAccessLog.getLastAccess(imageName);
+
+        List<Candidate> candidates = new ArrayList<>();
+        for (Image image : images) {
+            List<String> tags = getTags(image, imageName);
+            // since TestContainers 2 the name filter returns all images
+            if (tags.isEmpty()) {
+                continue;
+            }
+            Instant lastUsed = Instant.ofEpochSecond(image.getCreated() == null ? 0 : image.getCreated());
+            for (String tag : tags) {
+                Instant accessed = lastAccess.get(tag);
+                if (accessed != null && accessed.isAfter(lastUsed)) {
+                    lastUsed = accessed;
+                }
+            }
+            long size = image.getSize() == null ? 0 : image.getSize();
+            candidates.add(new Candidate(tags, lastUsed, size, tags.stream().anyMatch(protectedTags::contains)));
+        }
+
+        List<Candidate> removals = selectForRemoval(candidates, policy, Instant.now());
+        LOGGER.info("Image GC of '{}' with {}: {} image(s) found, {} to be removed", imageName, policy,
+                candidates.size(), removals.size());
+        return remove(dockerClient, imageName, removals, policy.getDeleteParallelism());
+    }
+
+    /**
+     * Applies the policy to the candidates, see {@link ImageRetentionPolicy} for the rules.
+     */
+    static List<Candidate> selectForRemoval(List<Candidate> candidates, ImageRetentionPolicy policy, Instant now) {
+        List<Candidate> sorted = candidates.stream()
+                .sorted(Comparator.comparing((Candidate candidate) -> candidate.lastUsed).reversed())
+                .collect(Collectors.toList());
+        Instant unusedThreshold = now.minus(policy.getMaxUnusedAge());
+        long keptBytes = 0;
+        List<Candidate> removals = new ArrayList<>();
+        for (int i = 0; i < sorted.size(); i++) {
+            Candidate candidate = sorted.get(i);
+            boolean keep = candidate.protectedImage
+                    || i < policy.getKeepLatest()
+                    || candidate.lastUsed.isAfter(unusedThreshold)
+                    && keptBytes + candidate.size <= policy.getDiskBudgetBytes();
+            if (keep) {
+                keptBytes += candidate.size;
+            } else {
+                removals.add(candidate);
+            }
+        }
+        return removals;
+    }
+
+    private static List<String> remove(DockerClient dockerClient, String imageName, List<Candidate> removals,
+            int parallelism) {
+        if (removals.isEmpty()) {
+            return Collections.emptyList();
+        }
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, removals.size()), runnable -> {
+            Thread thread = new Thread(runnable, "persistence-tooling-image-gc-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<CompletableFuture<List<String>>> futures = removals.stream()
+                    .map(candidate -> CompletableFuture.supplyAsync(
+                            () -> removeImage(dockerClient, imageName, candidate), executor))
+                    .collect(Collectors.toList());
+            return futures.stream()
+                    .flatMap(future -> future.join().stream())
+                    .collect(Collectors.toList());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Removes the tags of the image, docker deletes the image when its last tag is removed.
+     */
+    private static List<String> removeImage(DockerClient dockerClient, String imageName, Candidate candidate) {
+        List<String> removed = new ArrayList<>();
+        for (String tag : candidate.tags) {
+            String imageNameWithTag = imageName + ":" + tag;
+            try {
+                LOGGER.info("Removing image {} last used {}, size {} MB", imageNameWithTag, candidate.lastUsed,
+                        candidate.size / 1024 / 1024);
+                dockerClient.removeImageCmd(imageNameWithTag).exec();
+                ImageAccessLog.remove(imageName, tag);
+                removed.add(imageNameWithTag);
+            } catch (RuntimeException e) {
+                // e.g. the image is used by a running container
+                LOGGER.warn("Failed to remove image {}: {}", imageNameWithTag, e.toString());
+            }
+        }
+        return removed;
+    }
+
+    private static List<String> getTags(Image image, String imageName) {
+        String[] repoTags = image.getRepoTags();
+        if (repoTags == null) {
+            return Collections.emptyList();
+        }
+        List<String> tags = new ArrayList<>();
+        for (String repoTag : repoTags) {
+            if (repoTag.startsWith(imageName + ":")) {
+                tags.add(repoTag.substring(imageName.length() + 1));
+            }
+        }
+        return tags;
+    }
+
+    static final class Candidate {
+
+        final List<String> tags;
+        final Instant lastUsed;
+        final long size;
+        final boolean protectedImage;
+
+        Candidate(List<String> tags, Instant lastUsed, long size, boolean protectedImage) {
+            this.tags = tags;
+            this.lastUsed = lastUsed;
+            this.size = size;
+            this.protectedImage = protectedImage;
+        }
+
+        @Override
+        public String toString() {
+            return tags.toString();
+        }
+    }
+
+    private ImageGarbageCollector() {
+    }
+}
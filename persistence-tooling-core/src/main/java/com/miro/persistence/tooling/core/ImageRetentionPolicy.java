@@ -0,0 +1,141 @@
+package com.miro.persistence.tooling.core;
+
+import java.time.Duration;
+import java.util.Objects;
+import org.springframework.util.Assert;
+
+/**
+ * Which images of a name are kept by {@link ImageGarbageCollector}. Images are ordered by the last use (see
+ * {@link ImageAccessLog}, the creation time if the image was never used):
+ * <ul>
+ *     <li>the {@link Builder#keepLatest latest N} images are always kept</li>
+ *     <li>other images are kept if they were used within {@link Builder#maxUnusedAge} and fit into
+ *     {@link Builder#diskBudgetBytes} together with the more recently used images</li>
+ *     <li>the rest is removed, {@link Builder#deleteParallelism} images at a time</li>
+ * </ul>
+ *
+ * @author Sergey Chernov
+ */
+public final class ImageRetentionPolicy {
+
+    private final int keepLatest;
+    private final Duration maxUnusedAge;
+    private final long diskBudgetBytes;
+    private final int deleteParallelism;
+
+    private ImageRetentionPolicy(Builder builder) {
+        Assert.isTrue(builder.keepLatest >= 0, "keepLatest should not be negative");
+        Assert.isTrue(!builder.maxUnusedAge.isNegative(), "maxUnusedAge should not be negative");
+        Assert.isTrue(builder.diskBudgetBytes >= 0, "diskBudgetBytes should not be negative");
+        Assert.isTrue(builder.deleteParallelism > 0, "deleteParallelism should be positive");
+        this.keepLatest = builder.keepLatest;
+        this.maxUnusedAge = builder.maxUnusedAge;
+        this.diskBudgetBytes = builder.diskBudgetBytes;
+        this.deleteParallelism = builder.deleteParallelism;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Removes all images of the name, the behaviour of the former {@code removeOldExistedImages}.
+     */
+    public static ImageRetentionPolicy removeAll() {
+        return builder()
+                .keepLatest(0)
+                .maxUnusedAge(Duration.ZERO)
+                .build();
+    }
+
+    public int getKeepLatest() {
+        return keepLatest;
+    }
+
+    public Duration getMaxUnusedAge() {
+        return maxUnusedAge;
+    }
+
+    public long getDiskBudgetBytes() {
+        return diskBudgetBytes;
+    }
+
+    public int getDeleteParallelism() {
+        return deleteParallelism;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ImageRetentionPolicy)) {
+            return false;
+        }
+        ImageRetentionPolicy that = (ImageRetentionPolicy) o;
+        return keepLatest == that.keepLatest
+                && maxUnusedAge.equals(that.maxUnusedAge)
+                && diskBudgetBytes == that.diskBudgetBytes
+                && deleteParallelism == that.deleteParallelism;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(keepLatest, maxUnusedAge, diskBudgetBytes, deleteParallelism);
+    }
+
+    @Override
+    public String toString() {
+        return "ImageRetentionPolicy{" +
+            "keepLatest=" + keepLatest +
+            ", maxUnusedAge=" + maxUnusedAge +
+            ", diskBudgetBytes=" + diskBudgetBytes +
+            ", deleteParallelism=" + deleteParallelism +
+            '}';
+    }
+
+    public static class Builder {
+
+        private int keepLatest = 3;
+        private Duration maxUnusedAge = Duration.ofDays(7);
+        private long diskBudgetBytes = Long.MAX_VALUE;
+        private int deleteParallelism = 4;
+
+        /**
+         * Number of the most recently used images which are always kept.
+         */
+        public Builder keepLatest(int keepLatest) {
+            this.keepLatest = keepLatest;
+            return this;
+        }
+
+        /**
+         * Images not used for longer than this are removed (unless they are among the latest ones).
+         */
+        public Builder maxUnusedAge(Duration maxUnusedAge) {
+            this.maxUnusedAge = maxUnusedAge;
+            return this;
+        }
+
+        /**
+         * Max total size of the kept images (except the latest ones). The size is reported by docker per image
+         * including the shared base layers, so the budget is an upper estimate.
+         */
+        public Builder diskBudgetBytes(long diskBudgetBytes) {
+            this.diskBudgetBytes = diskBudgetBytes;
+            return this;
+        }
+
+        /**
+         * Max number of concurrent image deletions.
+         */
+        public Builder deleteParallelism(int deleteParallelism) {
+            this.deleteParallelism = deleteParallelism;
+            return this;
+        }
+
+        public ImageRetentionPolicy build() {
+            return new ImageRetentionPolicy(this);
+        }
+    }
+}
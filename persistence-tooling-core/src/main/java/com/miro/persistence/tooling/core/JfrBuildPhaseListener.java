@@ -0,0 +1,66 @@
+package com.miro.persistence.tooling.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Emits JDK Flight Recorder events for the build phases. The class is loaded only if JFR is available in the runtime,
+ * see {@link BuildPhaseListener#defaultListeners()}.
+ *
+ * @author Sergey Chernov
+ */
+final class JfrBuildPhaseListener implements BuildPhaseListener {
+
+    @Override
+    public void phaseFinished(BuildPhaseEvent event) {
+        BuildPhaseJfrEvent jfrEvent = new BuildPhaseJfrEvent();
+        if (!jfrEvent.isEnabled()) {
+            return;
+        }
+        jfrEvent.phase = event.getPhase().name();
+        jfrEvent.imageName = event.getImageName();
+        jfrEvent.phaseDuration = event.getDuration().toNanos();
+        jfrEvent.success = event.isSuccess();
+        jfrEvent.cacheHit = event.getCacheHit() == null ? null : event.getCacheHit() ? "hit" : "miss";
+        jfrEvent.imageSize = event.getImageSize() == null ? -1 : event.getImageSize();
+        jfrEvent.migrationCount = event.getMigrationCount() == null ? -1 : event.getMigrationCount();
+        jfrEvent.commit();
+    }
+
+    @Name("com.miro.persistence.tooling.BuildPhase")
+    @Label("Build Phase")
+    @Description("Finished phase of the postgres image resolution or build")
+    @Category({"Persistence Tooling"})
+    @StackTrace(false)
+    static class BuildPhaseJfrEvent extends Event {
+
+        @Label("Phase")
+        String phase;
+
+        @Label("Image Name")
+        String imageName;
+
+        @Label("Phase Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long phaseDuration;
+
+        @Label("Success")
+        boolean success;
+
+        @Label("Cache Hit")
+        String cacheHit;
+
+        @Label("Image Size")
+        @DataAmount(DataAmount.BYTES)
+        long imageSize;
+
+        @Label("Migration Count")
+        int migrationCount;
+    }
+}
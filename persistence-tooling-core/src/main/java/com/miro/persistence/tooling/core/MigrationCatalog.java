@@ -0,0 +1,253 @@
+package com.miro.persistence.tooling.core;
+
+import static java.util.Comparator.comparing;
+
+import jakarta.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.flywaydb.core.api.MigrationVersion;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Immutable list of the migrations of a location, sorted by version. The location is scanned once: classpath
+ * locations (directories and jars) are cached per JVM and class loader, {@code filesystem:} locations are scanned on
+ * each {@link #of(String)} call, because the files can be edited while the JVM is running.
+ * <p>
+ * The catalog feeds the checksum calculation ({@link FlywayChecksumUtils}) and the Flyway execution (see
+ * {@link MigrationCatalogResourceProvider}), so the migrations are not scanned again by Flyway.
+ *
+ * @author Sergey Chernov
+ */
+public final class MigrationCatalog {
+
+    /**
+     * Flyway style of file prefix
+     */
+    static final String FILESYSTEM_PREFIX = "filesystem:";
+
+    private static final ConcurrentMap<CatalogKey, MigrationCatalog> CLASSPATH_CATALOGS = new ConcurrentHashMap<>();
+
+    private final String location;
+    private final List<Entry> entries;
+    private final Map<String, Entry> entriesByFileName;
+    private final List<String> unservedResources;
+
+    private MigrationCatalog(String location, List<Entry> entries, List<String> unservedResources) {
+        this.location = location;
+        this.entries = Collections.unmodifiableList(entries);
+        this.unservedResources = Collections.unmodifiableList(unservedResources);
+        Map<String, Entry> byFileName = new LinkedHashMap<>();
+        entries.forEach(entry -> byFileName.put(entry.getFileName(), entry));
+        this.entriesByFileName = Collections.unmodifiableMap(byFileName);
+    }
+
+    /**
+     * Returns the catalog of the migration location, e.g. "db/migration" or "filesystem:/path/to/migrations".
+     */
+    public static MigrationCatalog of(String migrationResourcesPath) {
+        Objects.requireNonNull(migrationResourcesPath, "migrationResourcesPath is null");
+        if (migrationResourcesPath.startsWith(FILESYSTEM_PREFIX)) {
+            return create(migrationResourcesPath);
+        }
+        // classpath resources are resolved via the context class loader
+        CatalogKey key = new CatalogKey(migrationResourcesPath, ClassUtils.getDefaultClassLoader());
+        return CLASSPATH_CATALOGS.computeIfAbsent(key, k -> create(migrationResourcesPath));
+    }
+
+    private static MigrationCatalog create(String migrationResourcesPath) {
+        List<Entry> entries = new ArrayList<>();
+        for (Resource resource : scan(migrationResourcesPath)) {
+            String fileName = Objects.requireNonNull(resource.getFilename(), resource + " fileName is null");
+            entries.add(new Entry(resource, fileName, FlywayVersionUtils.getVersion(fileName)));
+        }
+        entries.sort(comparing(Entry::getVersion));
+        return new MigrationCatalog(migrationResourcesPath, entries, scanUnserved(migrationResourcesPath));
+    }
+
+    /**
+     * Resources of the location Flyway would apply, but the catalog doesn't contain: SQL migrations in
+     * subdirectories and Java migration classes.
+     */
+    private static List<String> scanUnserved(String migrationResourcesPath) {
+        String resourcePathToUse = adaptResourcePath(migrationResourcesPath);
+        ResourcePatternResolver resourcePatternResolver = new PathMatchingResourcePatternResolver();
+        try {
+            List<String> resources = new ArrayList<>();
+            for (String pattern : new String[]{"/*/**/*.sql", "/**/*.class"}) {
+                for (Resource resource : resourcePatternResolver.getResources(resourcePathToUse + pattern)) {
+                    resources.add(resource.getDescription());
+                }
+            }
+            return resources;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error while listing resources:" + migrationResourcesPath, e);
+        }
+    }
+
+    static List<Resource> scan(String migrationResourcesPath) {
+        String resourcePathToUse = adaptResourcePath(migrationResourcesPath);
+        ResourcePatternResolver resourcePatternResolver = new PathMatchingResourcePatternResolver();
+        try {
+            List<Resource> resources = new ArrayList<>();
+            Collections.addAll(resources, resourcePatternResolver.getResources(resourcePathToUse + "/*.sql"));
+            return resources;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error while listing resources:" + migrationResourcesPath, e);
+        }
+    }
+
+    static String adaptResourcePath(String resourcePath) {
+        String resourcePathToUse = resourcePath;
+        if (resourcePathToUse.startsWith(FILESYSTEM_PREFIX)) {
+            // spring style vs flyway style
+            resourcePathToUse = "file:" + resourcePathToUse.substring(FILESYSTEM_PREFIX.length());
+        }
+        return resourcePathToUse;
+    }
+
+    /**
+     * Migration location as passed to {@link #of(String)}.
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    /**
+     * Flyway location of the migrations, e.g. "classpath:db/migration".
+     */
+    public String getFlywayLocation() {
+        return location.startsWith(FILESYSTEM_PREFIX) ? location : "classpath:" + location;
+    }
+
+    /**
+     * Migrations sorted by version.
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Descriptions of the SQL migrations in subdirectories and the Java migrations of the location, they are not
+     * served by {@link MigrationCatalogResourceProvider} and are not part of the checksum.
+     */
+    public List<String> getUnservedResources() {
+        return unservedResources;
+    }
+
+    @Nullable
+    public Entry getEntry(String fileName) {
+        return entriesByFileName.get(fileName);
+    }
+
+    public MigrationVersion getLatestVersion() {
+        if (entries.isEmpty()) {
+            throw new IllegalStateException("Migrations list is empty for [" + location + "]");
+        }
+        return entries.get(entries.size() - 1).getVersion();
+    }
+
+    @Override
+    public String toString() {
+        return "MigrationCatalog{" +
+            "location='" + location + '\'' +
+            ", migrations=" + entries.size() +
+            '}';
+    }
+
+    /**
+     * Migration file with parsed version, the content is loaded on demand and softly cached.
+     */
+    public static final class Entry {
+
+        private final Resource resource;
+        private final String fileName;
+        private final MigrationVersion version;
+        private volatile SoftReference<byte[]> content = new SoftReference<>(null);
+
+        private Entry(Resource resource, String fileName, MigrationVersion version) {
+            this.resource = resource;
+            this.fileName = fileName;
+            this.version = version;
+        }
+
+        Resource getResource() {
+            return resource;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public MigrationVersion getVersion() {
+            return version;
+        }
+
+        /**
+         * Description of the migration location, e.g. the file path or the jar entry URL.
+         */
+        public String getDescription() {
+            return resource.getDescription();
+        }
+
+        public byte[] getContent() {
+            byte[] bytes = content.get();
+            if (bytes == null) {
+                try (InputStream in = resource.getInputStream()) {
+                    bytes = StreamUtils.copyToByteArray(in);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Error while reading " + resource, e);
+                }
+                content = new SoftReference<>(bytes);
+            }
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return fileName;
+        }
+    }
+
+    private static final class CatalogKey {
+
+        private final String location;
+        @Nullable
+        private final ClassLoader classLoader;
+
+        private CatalogKey(String location, @Nullable ClassLoader classLoader) {
+            this.location = location;
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CatalogKey)) {
+                return false;
+            }
+            CatalogKey that = (CatalogKey) o;
+            return location.equals(that.location) && classLoader == that.classLoader;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(location, System.identityHashCode(classLoader));
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.miro.persistence.tooling.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.flywaydb.core.api.Location;
+import org.flywaydb.core.api.ResourceProvider;
+import org.flywaydb.core.api.configuration.FluentConfiguration;
+import org.flywaydb.core.api.resource.LoadableResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Flyway {@link ResourceProvider} serving the migrations of a {@link MigrationCatalog}, so Flyway does not scan the
+ * location again.
+ *
+ * @author Sergey Chernov
+ */
+public class MigrationCatalogResourceProvider implements ResourceProvider {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MigrationCatalogResourceProvider.class);
+
+    private final MigrationCatalog catalog;
+    private final Charset encoding;
+
+    public MigrationCatalogResourceProvider(MigrationCatalog catalog, Charset encoding) {
+        this.catalog = catalog;
+        this.encoding = encoding;
+    }
+
+    /**
+     * Installs the provider of the catalog into the configuration, so the location is not scanned by Flyway again.
+     * A resource provider set explicitly is kept as is. If the configuration has other locations, Java migrations or
+     * resolvers, or the location contains migrations the catalog doesn't serve (see
+     * {@link MigrationCatalog#getUnservedResources()}), Flyway scans the locations itself.
+     *
+     * @return true if the provider is installed
+     */
+    public static boolean install(FluentConfiguration configuration, MigrationCatalog catalog) {
+        if (configuration.getResourceProvider() != null) {
+            return false;
+        }
+        List<Location> locations = Arrays.asList(configuration.getLocations());
+        if (!locations.equals(Collections.singletonList(new Location(catalog.getFlywayLocation())))) {
+            LOGGER.warn("Flyway locations {} differ from the migration set location [{}], they are scanned by Flyway, "
+                    + "the migrations of the other locations are not part of the image tag", locations,
+                    catalog.getFlywayLocation());
+            return false;
+        }
+        if (configuration.getJavaMigrations().length != 0
+                || configuration.getResolvers().length != 0
+                || configuration.getJavaMigrationClassProvider() != null) {
+            LOGGER.warn("Flyway configuration of [{}] has Java migrations or custom migration resolvers, the location "
+                    + "is scanned by Flyway, these migrations are not part of the image tag", catalog.getLocation());
+            return false;
+        }
+        List<String> unservedResources = catalog.getUnservedResources();
+        if (!unservedResources.isEmpty()) {
+            LOGGER.warn("Location [{}] contains migrations which are not part of the image tag, they are scanned by "
+                    + "Flyway: {}", catalog.getLocation(), unservedResources);
+            return false;
+        }
+        configuration.resourceProvider(new MigrationCatalogResourceProvider(catalog, configuration.getEncoding()));
+        // the location has no java migrations, the classpath is not scanned for them
+        configuration.javaMigrationClassProvider(Collections::emptyList);
+        return true;
+    }
+
+    @Override
+    public LoadableResource getResource(String name) {
+        MigrationCatalog.Entry entry = catalog.getEntry(name);
+        return entry == null ? null : new CatalogResource(entry, encoding);
+    }
+
+    @Override
+    public Collection<LoadableResource> getResources(String prefix, String[] suffixes) {
+        List<LoadableResource> resources = new ArrayList<>();
+        for (MigrationCatalog.Entry entry : catalog.getEntries()) {
+            String fileName = entry.getFileName();
+            if (fileName.startsWith(prefix) && endsWithAny(fileName, suffixes)) {
+                resources.add(new CatalogResource(entry, encoding));
+            }
+        }
+        return resources;
+    }
+
+    private static boolean endsWithAny(String fileName, String[] suffixes) {
+        for (String suffix : suffixes) {
+            if (fileName.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class CatalogResource extends LoadableResource {
+
+        private final MigrationCatalog.Entry entry;
+        private final Charset encoding;
+
+        private CatalogResource(MigrationCatalog.Entry entry, Charset encoding) {
+            this.entry = entry;
+            this.encoding = encoding;
+        }
+
+        @Override
+        public Reader read() {
+            return new InputStreamReader(new ByteArrayInputStream(entry.getContent()), encoding);
+        }
+
+        @Override
+        public String getAbsolutePath() {
+            return entry.getDescription();
+        }
+
+        @Override
+        public String getAbsolutePathOnDisk() {
+            return entry.getDescription();
+        }
+
+        @Override
+        public String getFilename() {
+            return entry.getFileName();
+        }
+
+        @Override
+        public String getRelativePath() {
+            return entry.getFileName();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.miro.persistence.tooling.core;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.springframework.core.io.Resource;
+
+/**
+ * Streaming hashing engine for the migration resources. Files are hashed in parallel on a dedicated fork-join pool,
+ * content is streamed through per-thread reused buffers (filesystem resources are read via {@link FileChannel}),
+ * per-file digests are combined in the given order into a Merkle root, so the result is deterministic.
+ * <p>
+ * The digest algorithm is any {@link MessageDigest} algorithm available in the JVM, custom (faster) algorithms can be
+ * plugged in via a registered {@link java.security.Provider}.
+ *
+ * @author Sergey Chernov
+ */
+final class MigrationDigester {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(BUFFER_SIZE));
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private final String algorithm;
+
+    MigrationDigester(String algorithm) {
+        this.algorithm = algorithm;
+        // fail fast on unknown algorithm
+        newDigest();
+    }
+
+    String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Calculates digests of the resources in parallel, the order of the result matches the order of the resources.
+     */
+    <T> List<String> digestAll(List<T> items, Function<T, String> digestFunction) {
+        if (items.size() < 2) {
+            return items.stream().map(digestFunction).collect(Collectors.toList());
+        }
+        return POOL.submit(() -> items.parallelStream()
+                        .map(digestFunction)
+                        .collect(Collectors.toList()))
+                .join();
+    }
+
+    /**
+     * Hex digest of the resource file name and content.
+     */
+    String digest(Resource resource) {
+        MessageDigest digest = newDigest();
+        digest.update((resource.getFilename() + "\n").getBytes(UTF_8));
+        ByteBuffer buffer = BUFFER.get();
+        try {
+            if (resource.isFile()) {
+                try (FileChannel channel = FileChannel.open(resource.getFile().toPath(), StandardOpenOption.READ)) {
+                    buffer.clear();
+                    while (channel.read(buffer) != -1) {
+                        buffer.flip();
+                        digest.update(buffer);
+                        buffer.clear();
+                    }
+                }
+            } else {
+                byte[] array = buffer.array();
+                try (InputStream in = resource.getInputStream()) {
+                    int len;
+                    while ((len = in.read(array)) != -1) {
+                        digest.update(array, 0, len);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error while reading " + resource, e);
+        }
+        return FlywayChecksumUtils.toHex(digest.digest());
+    }
+
+    /**
+     * Combines hex leaf digests pairwise into a Merkle root, the odd node of a level is promoted as is.
+     */
+    String merkleRoot(List<String> leafDigests) {
+        if (leafDigests.isEmpty()) {
+            return FlywayChecksumUtils.toHex(newDigest().digest());
+        }
+        List<String> level = leafDigests;
+        while (level.size() > 1) {
+            List<String> nextLevel = new ArrayList<>((level.size() + 1) / 2);
+            for (int i = 0; i < level.size(); i += 2) {
+                if (i + 1 < level.size()) {
+                    MessageDigest digest = newDigest();
+                    digest.update(level.get(i).getBytes(UTF_8));
+                    digest.update(level.get(i + 1).getBytes(UTF_8));
+                    nextLevel.add(FlywayChecksumUtils.toHex(digest.digest()));
+                } else {
+                    nextLevel.add(level.get(i));
+                }
+            }
+            level = nextLevel;
+        }
+        return level.get(0);
+    }
+
+    MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unsupported digest algorithm [" + algorithm + "]", e);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.miro.persistence.tooling.core;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import jakarta.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Locally installed postgres binaries ({@code initdb}, {@code pg_ctl}, {@code postgres}). The binaries are resolved
+ * from the directory defined by the {@value #BIN_DIR_PROPERTY} system property, or from {@code PATH}. The server
+ * listens on localhost only, unix sockets are disabled, so the data directory path length doesn't matter.
+ * <p>
+ * Postgres refuses to run as root, the tests should be executed by a regular user.
+ *
+ * @author Sergey Chernov
+ */
+public final class NativePostgresBinaries {
+
+    static final String BIN_DIR_PROPERTY = "persistence-tooling.postgres-bin-dir";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NativePostgresBinaries.class);
+
+    private static final Pattern VERSION_PATTERN = Pattern.compile("\\(PostgreSQL\\) (\\S+)");
+
+    private static final String LOG_FILE = "postgres.log";
+
+    @Nullable
+    private final Path binDir;
+
+    private final String version;
+
+    private NativePostgresBinaries(@Nullable Path binDir) {
+        this.binDir = binDir;
+        String output = run(Arrays.asList(command("postgres"), "--version")).trim();
+        Matcher matcher = VERSION_PATTERN.matcher(output);
+        Assert.state(matcher.find(), () -> "Unexpected postgres version: " + output);
+        this.version = matcher.group(1);
+    }
+
+    /**
+     * Locates the binaries, fails if they are not installed.
+     */
+    public static NativePostgresBinaries locate() {
+        String binDir = System.getProperty(BIN_DIR_PROPERTY);
+        return new NativePostgresBinaries(binDir == null ? null : Paths.get(binDir));
+    }
+
+    /**
+     * Postgres version, e.g. {@code 15.4}. The data directory is compatible with binaries of the same major version
+     * only.
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Creates a new data directory with the superuser and the password.
+     */
+    void initdb(Path dataDir, String user, String password) {
+        Path passwordFile = dataDir.resolveSibling(dataDir.getFileName() + ".pwfile");
+        try {
+            Files.write(passwordFile, password.getBytes(UTF_8));
+            run(Arrays.asList(command("initdb"), "-D", dataDir.toString(), "-U", user,
+                    "--pwfile=" + passwordFile, "--auth-local=trust", "--auth-host=scram-sha-256",
+                    "--encoding=UTF8", "--no-locale", "--no-sync"));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write password file " + passwordFile, e);
+        } finally {
+            passwordFile.toFile().delete();
+        }
+    }
+
+    /**
+     * Starts postgres on the data directory and waits until it accepts connections.
+     *
+     * @param settings server settings passed as {@code -c name=value}
+     */
+    public void start(Path dataDir, int port, Map<String, String> settings) {
+        StringBuilder options = new StringBuilder("-p " + port
+                + " -c listen_addresses=127.0.0.1 -c unix_socket_directories=''");
+        settings.forEach((name, value) -> options.append(" -c ").append(name).append('=').append(value));
+        run(Arrays.asList(command("pg_ctl"), "start", "-D", dataDir.toString(), "-w", "-t", "60",
+                "-l", dataDir.resolveSibling(dataDir.getFileName() + "-" + LOG_FILE).toString(),
+                "-o", options.toString()));
+    }
+
+    /**
+     * Stops postgres. The fast shutdown writes a checkpoint, so the data directory is consistent, the immediate one is
+     * used for throwaway data.
+     */
+    public void stop(Path dataDir, boolean fast) {
+        run(Arrays.asList(command("pg_ctl"), "stop", "-D", dataDir.toString(), "-w",
+                "-m", fast ? "fast" : "immediate"));
+    }
+
+    /**
+     * @return true if postgres is running on the data directory
+     */
+    public boolean isRunning(Path dataDir) {
+        return Files.exists(dataDir.resolve("postmaster.pid"));
+    }
+
+    public static String getJdbcUrl(int port, String dbName) {
+        return "jdbc:postgresql://127.0.0.1:" + port + "/" + dbName;
+    }
+
+    /**
+     * Free local port, postgres fails to start if it's taken concurrently.
+     */
+    public static int findFreePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to find a free port", e);
+        }
+    }
+
+    private String command(String name) {
+        return binDir == null ? name : binDir.resolve(name).toString();
+    }
+
+    /**
+     * Runs the command, fails on non-zero exit code. The output of the command is returned, the server output is
+     * redirected to the log file by {@code pg_ctl}, so the output stream is closed when the command exits.
+     */
+    private static String run(List<String> command) {
+        LOGGER.debug("Executing {}", command);
+        try {
+            Process process = new ProcessBuilder(new ArrayList<>(command))
+                    .redirectErrorStream(true)
+                    .start();
+            String output;
+            try (InputStream in = process.getInputStream()) {
+                output = StreamUtils.copyToString(in, UTF_8);
+            }
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                throw new IllegalStateException(command + " failed with exit code " + exitCode + ": " + output);
+            }
+            return output;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to execute " + command, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while executing " + command, e);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.miro.persistence.tooling.core;
+
+import jakarta.annotation.Nullable;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+/**
+ * {@link PostgresExecutable} running the locally installed postgres binaries without docker, see
+ * {@link NativePostgresBinaries}. {@link #saveState} stops postgres and moves PGDATA into the cache of
+ * {@link PgDataDirectories}, runtime instances are started from a copy of the cached directory.
+ * <p>
+ * The {@link #getBaseImageName() base image name} contains the postgres version, so the checksum tag changes when
+ * the binaries are upgraded.
+ *
+ * @author Sergey Chernov
+ * @implNote The implementation synchronizes on {@code this}, the current object
+ */
+public class NativePostgresExecutable implements PostgresExecutable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NativePostgresExecutable.class);
+
+    private static final String BASE_IMAGE_PREFIX = "postgres-native:";
+
+    private static final String MAINTENANCE_DATABASE = "postgres";
+
+    private final NativePostgresBinaries binaries;
+
+    private PostgresBuildProfile buildProfile = PostgresBuildProfile.DEFAULT;
+
+    private BuildPhaseListener buildPhaseListener = BuildPhaseListener.NOOP;
+
+    @Nullable
+    private Path workDir;
+
+    @Nullable
+    private Path dataDir;
+
+    @Nullable
+    private String jdbcUrl;
+
+    private String user;
+
+    private String password;
+
+    private NativePostgresExecutable(NativePostgresBinaries binaries) {
+        this.binaries = binaries;
+    }
+
+    /**
+     * Locates the binaries, fails if they are not installed.
+     */
+    public static NativePostgresExecutable create() {
+        return create(NativePostgresBinaries.locate());
+    }
+
+    public static NativePostgresExecutable create(NativePostgresBinaries binaries) {
+        return new NativePostgresExecutable(binaries);
+    }
+
+    /**
+     * Settings applied while postgres is running, they are reset before the state is saved.
+     */
+    public synchronized NativePostgresExecutable withBuildProfile(PostgresBuildProfile buildProfile) {
+        Assert.state(jdbcUrl == null, "postgres is already running");
+        this.buildProfile = buildProfile;
+        return this;
+    }
+
+    /**
+     * Listener of the build phases timings: postgres start, init scripts, checkpoint and the state saving.
+     */
+    public synchronized NativePostgresExecutable withBuildPhaseListener(BuildPhaseListener buildPhaseListener) {
+        Assert.state(jdbcUrl == null, "postgres is already running");
+        this.buildPhaseListener = buildPhaseListener;
+        return this;
+    }
+
+    @Override
+    public synchronized String start(String dbName, String user, String password, List<InitScript> initScripts) {
+        Assert.state(jdbcUrl == null, "postgres is already running");
+
+        Path newWorkDir = PgDataDirectories.createWorkDirectory("build");
+        Path newDataDir = newWorkDir.resolve("pgdata");
+        int port = NativePostgresBinaries.findFreePort();
+        try {
+            try (BuildPhaseTimer timer = BuildPhaseTimer.start(buildPhaseListener, BuildPhase.CONTAINER_START,
+                    getBaseImageName())) {
+                binaries.initdb(newDataDir, user, password);
+                binaries.start(newDataDir, port, Collections.emptyMap());
+                timer.succeeded();
+            }
+            workDir = newWorkDir;
+            dataDir = newDataDir;
+            this.user = user;
+            this.password = password;
+            execute(NativePostgresBinaries.getJdbcUrl(port, MAINTENANCE_DATABASE),
+                    Collections.singletonList("CREATE DATABASE \"" + dbName + "\""));
+            jdbcUrl = NativePostgresBinaries.getJdbcUrl(port, dbName);
+        } catch (RuntimeException e) {
+            cleanUp(newWorkDir, newDataDir);
+            workDir = null;
+            dataDir = null;
+            throw e;
+        }
+        if (!initScripts.isEmpty()) {
+            try (BuildPhaseTimer timer = BuildPhaseTimer.start(buildPhaseListener, BuildPhase.INIT_SCRIPTS,
+                    getBaseImageName())) {
+                for (InitScript script : initScripts) {
+                    // the driver executes multiple statements of a script as a single simple query
+                    execute(jdbcUrl, Collections.singletonList(script.script()));
+                }
+                timer.succeeded();
+            }
+        }
+        applyBuildSettings();
+        LOGGER.info("Native postgres {} started: {}", binaries.getVersion(), jdbcUrl);
+        return jdbcUrl;
+    }
+
+    /**
+     * Stops postgres and removes the work directory, does nothing if postgres is not running (e.g. it's already
+     * stopped after the failed {@link #saveState}).
+     */
+    @Override
+    public synchronized void stop() {
+        if (workDir == null || dataDir == null) {
+            return;
+        }
+        cleanUp(workDir, dataDir);
+        workDir = null;
+        dataDir = null;
+        jdbcUrl = null;
+    }
+
+    @Override
+    public String getBaseImageName() {
+        return BASE_IMAGE_PREFIX + binaries.getVersion();
+    }
+
+    @Override
+    public void saveState(String imageName, String tag) {
+        saveState(imageName, tag, Collections.emptyMap());
+    }
+
+    @Override
+    public synchronized void saveState(String imageName, String tag, Map<String, String> labels) {
+        try {
+            Assert.state(jdbcUrl != null && dataDir != null, "postgres isn't started yet");
+
+            // the saved state should have the default runtime configuration
+            resetBuildSettings();
+            String imageNameWithTag = imageName + ":" + tag;
+            Map<String, String> stateLabels = new LinkedHashMap<>(labels);
+            try (Connection connection = DriverManager.getConnection(jdbcUrl, user, password)) {
+                stateLabels.put(PersistenceImageLabels.SCHEMA_FINGERPRINT, SchemaFingerprint.calculate(connection));
+            } catch (SQLException e) {
+                throw new IllegalStateException("Failed to calculate schema fingerprint", e);
+            }
+            try (BuildPhaseTimer timer = BuildPhaseTimer.start(buildPhaseListener, BuildPhase.CHECKPOINT,
+                    imageNameWithTag)) {
+                // clean shutdown writes the checkpoint, so the directory is consistent
+                binaries.stop(dataDir, true);
+                timer.succeeded();
+            }
+            try (BuildPhaseTimer timer = BuildPhaseTimer.start(buildPhaseListener, BuildPhase.SNAPSHOT_SAVE,
+                    imageNameWithTag)) {
+                PgDataDirectories.save(dataDir, imageName, tag, stateLabels);
+                timer.succeeded();
+            }
+        } catch (RuntimeException e) {
+            stop();
+            throw new RuntimeException("Saving native postgres state failed", e);
+        }
+    }
+
+    private void applyBuildSettings() {
+        Map<String, String> settings = buildProfile.getSettings();
+        if (settings.isEmpty()) {
+            return;
+        }
+        List<String> commands = new ArrayList<>();
+        settings.forEach((name, value) -> commands.add("ALTER SYSTEM SET " + name + " = '" + value + "'"));
+        commands.add("SELECT pg_reload_conf()");
+        execute(jdbcUrl, commands);
+        LOGGER.info("Postgres build profile {} applied: {}", buildProfile, settings);
+    }
+
+    private void resetBuildSettings() {
+        Map<String, String> settings = buildProfile.getSettings();
+        if (settings.isEmpty()) {
+            return;
+        }
+        List<String> commands = new ArrayList<>();
+        settings.keySet().forEach(name -> commands.add("ALTER SYSTEM RESET " + name));
+        commands.add("SELECT pg_reload_conf()");
+        execute(jdbcUrl, commands);
+        LOGGER.info("Postgres build profile {} reset", buildProfile);
+    }
+
+    /**
+     * Executes each command separately in auto-commit mode (e.g. ALTER SYSTEM can't be executed in a transaction
+     * block).
+     */
+    private void execute(String url, List<String> commands) {
+        try (Connection connection = DriverManager.getConnection(url, user, password);
+             Statement statement = connection.createStatement()) {
+            for (String command : commands) {
+                statement.execute(command);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to execute " + commands, e);
+        }
+    }
+
+    /**
+     * Stops postgres if it's still running (e.g. the state is not saved) and removes the work directory.
+     */
+    private void cleanUp(Path workDir, Path dataDir) {
+        try {
+            if (binaries.isRunning(dataDir)) {
+                binaries.stop(dataDir, false);
+            }
+        } finally {
+            PgDataDirectories.delete(workDir);
+        }
+    }
+}
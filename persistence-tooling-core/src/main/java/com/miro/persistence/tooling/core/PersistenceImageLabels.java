@@ -0,0 +1,35 @@
+package com.miro.persistence.tooling.core;
+
+/**
+ * Labels of the docker images created by the persistence tooling.
+ *
+ * @author Sergey Chernov
+ */
+public final class PersistenceImageLabels {
+
+    private static final String PREFIX = "com.miro.persistence-tooling.";
+
+    /**
+     * Digest of the applied migrations prefix (base image, init scripts and all migrations up to the latest one), see
+     * {@link FlywayChecksum#getPrefixDigests()}.
+     */
+    public static final String MIGRATION_PREFIX_DIGEST = PREFIX + "migration-prefix-digest";
+
+    /**
+     * Number of applied migrations.
+     */
+    public static final String MIGRATION_COUNT = PREFIX + "migration-count";
+
+    /**
+     * Latest applied migration version.
+     */
+    public static final String MIGRATION_VERSION = PREFIX + "migration-version";
+
+    /**
+     * Fingerprint of the saved schema, see {@link SchemaFingerprint}.
+     */
+    public static final String SCHEMA_FINGERPRINT = PREFIX + "schema-fingerprint";
+
+    private PersistenceImageLabels() {
+    }
+}
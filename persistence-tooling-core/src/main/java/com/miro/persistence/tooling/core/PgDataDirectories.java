@@ -0,0 +1,282 @@
+package com.miro.persistence.tooling.core;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Local cache of PGDATA directories of {@link NativePostgresExecutable}, keyed by image name and checksum tag. The
+ * directory of the stopped build is moved into the cache as is, runtime instances are started from a copy of the
+ * cached directory.
+ * <p>
+ * Copies are made via {@code cp --reflink=auto}, so they are copy-on-write clones on filesystems supporting reflinks
+ * (btrfs, xfs, overlayfs on top of them) and regular copies otherwise. Hardlinks are never used for the copies,
+ * postgres rewrites the relation files in place, so a hardlinked copy would corrupt the cached directory.
+ * <p>
+ * The cache directory can be overridden via the {@value #PGDATA_DIR_PROPERTY} system property. Work directories of the
+ * builds and the runtime instances are created in the same filesystem, so the cache is filled by an atomic rename.
+ * Obsolete directories are removed by {@link #collect} according to an {@link ImageRetentionPolicy}, the use of
+ * a directory is recorded in the {@link ImageAccessLog}.
+ *
+ * @author Sergey Chernov
+ */
+public final class PgDataDirectories {
+
+    static final String PGDATA_DIR_PROPERTY = "persistence-tooling.pgdata-dir";
+
+    private static final String WORK_DIR = ".work";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PgDataDirectories.class);
+
+    /**
+     * Cached PGDATA directory, it's complete if it exists.
+     */
+    public static Path getDirectory(String imageName, String tag) {
+        return getRoot().resolve(imageName.replaceAll("[^A-Za-z0-9._-]", "_")).resolve(tag);
+    }
+
+    /**
+     * Reads the metadata (labels) saved next to the cached directory.
+     */
+    public static Map<String, String> readMetadata(Path directory) {
+        Path metadataFile = getMetadataFile(directory);
+        Properties metadata = new Properties();
+        try (InputStream in = Files.newInputStream(metadataFile)) {
+            metadata.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read PGDATA metadata " + metadataFile, e);
+        }
+        Map<String, String> labels = new HashMap<>();
+        metadata.stringPropertyNames().forEach(name -> labels.put(name, metadata.getProperty(name)));
+        return labels;
+    }
+
+    /**
+     * Creates a new unique work directory for a build or a runtime instance, it should be removed via
+     * {@link #delete(Path)}.
+     */
+    public static Path createWorkDirectory(String prefix) {
+        Path workDir = getRoot().resolve(WORK_DIR).resolve(prefix + "-" + UUID.randomUUID());
+        try {
+            Files.createDirectories(workDir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create work directory " + workDir, e);
+        }
+        return workDir;
+    }
+
+    /**
+     * Moves PGDATA of the stopped build into the cache. The metadata (labels) is written first, the directory is moved
+     * in place atomically, so its presence means the directory is complete.
+     */
+    static void save(Path dataDir, String imageName, String tag, Map<String, String> labels) {
+        Path directory = getDirectory(imageName, tag);
+        long startNanos = System.nanoTime();
+        try {
+            Files.createDirectories(directory.getParent());
+            Properties metadata = new Properties();
+            metadata.putAll(labels);
+            try (OutputStream out = Files.newOutputStream(getMetadataFile(directory))) {
+                metadata.store(out, "PGDATA " + imageName + ":" + tag);
+            }
+            try {
+                Files.move(dataDir, directory, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                // the build directory is on another filesystem, e.g. the cache directory was changed
+                Path tempDir = directory.resolveSibling(tag + "-" + UUID.randomUUID() + ".tmp");
+                copy(dataDir, tempDir);
+                Files.move(tempDir, directory, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save PGDATA directory " + directory, e);
+        }
+        LOGGER.info("PGDATA directory {} saved in {} ms", directory, (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+    /**
+     * Removes the cached directories of the image name according to the policy, the same way as
+     * {@link ImageGarbageCollector} removes the images.
+     *
+     * @param protectedTags tags which are never removed, e.g. the tag being used right now
+     * @return removed tags, e.g. "postgres-it:V2-33f7f7"
+     */
+    public static List<String> collect(String imageName, ImageRetentionPolicy policy,
+            Collection<String> protectedTags) {
+        Path imageDir = getDirectory(imageName, "tag").getParent();
+        Map<String, Instant> lastAccess = ImageAccessLog.getLastAccess(imageName);
+        List<ImageGarbageCollector.Candidate> candidates = new ArrayList<>();
+        // the temp directories are the ones being saved or removed concurrently
+        DirectoryStream.Filter<Path> filter = path -> Files.isDirectory(path)
+                && !path.getFileName().toString().endsWith(".tmp");
+        try (DirectoryStream<Path> directories = Files.newDirectoryStream(imageDir, filter)) {
+            for (Path directory : directories) {
+                String tag = directory.getFileName().toString();
+                Instant lastUsed = Files.getLastModifiedTime(directory).toInstant();
+                Instant accessed = lastAccess.get(tag);
+                if (accessed != null && accessed.isAfter(lastUsed)) {
+                    lastUsed = accessed;
+                }
+                candidates.add(new ImageGarbageCollector.Candidate(Collections.singletonList(tag), lastUsed,
+                        getSize(directory), protectedTags.contains(tag)));
+            }
+        } catch (NoSuchFileException e) {
+            return Collections.emptyList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list PGDATA directories " + imageDir, e);
+        }
+
+        List<ImageGarbageCollector.Candidate> removals =
+                ImageGarbageCollector.selectForRemoval(candidates, policy, Instant.now());
+        LOGGER.info("PGDATA GC of '{}' with {}: {} directories found, {} to be removed", imageName, policy,
+                candidates.size(), removals.size());
+        List<String> removed = new ArrayList<>();
+        for (ImageGarbageCollector.Candidate candidate : removals) {
+            String tag = candidate.tags.get(0);
+            Path directory = getDirectory(imageName, tag);
+            try {
+                LOGGER.info("Removing PGDATA directory {} last used {}, size {} MB", directory, candidate.lastUsed,
+                        candidate.size / 1024 / 1024);
+                // the renamed directory is not visible to the concurrent processes anymore
+                Path tempDir = directory.resolveSibling(tag + "-" + UUID.randomUUID() + ".tmp");
+                Files.move(directory, tempDir, StandardCopyOption.ATOMIC_MOVE);
+                Files.deleteIfExists(getMetadataFile(directory));
+                delete(tempDir);
+                ImageAccessLog.remove(imageName, tag);
+                removed.add(imageName + ":" + tag);
+            } catch (IOException | UncheckedIOException e) {
+                LOGGER.warn("Failed to remove PGDATA directory {}: {}", directory, e.toString());
+            }
+        }
+        return removed;
+    }
+
+    private static long getSize(Path directory) throws IOException {
+        AtomicLong size = new AtomicLong();
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                size.addAndGet(attrs.size());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return size.get();
+    }
+
+    /**
+     * Copies the directory (copy-on-write where supported), the target should not exist.
+     */
+    public static void copy(Path source, Path target) {
+        try {
+            Process process = new ProcessBuilder("cp", "-a", "--reflink=auto", source.toString(), target.toString())
+                    .redirectErrorStream(true)
+                    .start();
+            String output;
+            try (InputStream in = process.getInputStream()) {
+                output = StreamUtils.copyToString(in, UTF_8);
+            }
+            if (process.waitFor() == 0) {
+                return;
+            }
+            LOGGER.debug("cp of {} failed, falling back to the plain copy: {}", source, output);
+            delete(target);
+        } catch (IOException e) {
+            // e.g. no GNU cp
+            LOGGER.debug("cp of {} is not available, falling back to the plain copy", source, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while copying " + source, e);
+        }
+        copyFiles(source, target);
+    }
+
+    private static void copyFiles(Path source, Path target) {
+        try {
+            Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    Files.copy(dir, target.resolve(source.relativize(dir).toString()),
+                            StandardCopyOption.COPY_ATTRIBUTES);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Files.copy(file, target.resolve(source.relativize(file).toString()),
+                            StandardCopyOption.COPY_ATTRIBUTES);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to copy " + source + " to " + target, e);
+        }
+    }
+
+    /**
+     * Deletes the directory recursively, if it exists.
+     */
+    public static void delete(Path directory) {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try {
+            Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Files.delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                    if (e != null) {
+                        throw e;
+                    }
+                    Files.delete(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete " + directory, e);
+        }
+    }
+
+    private static Path getMetadataFile(Path directory) {
+        return directory.resolveSibling(directory.getFileName() + ".properties");
+    }
+
+    private static Path getRoot() {
+        String pgDataDir = System.getProperty(PGDATA_DIR_PROPERTY);
+        return pgDataDir == null
+                ? FlywayChecksumCache.getCacheDir().resolve("pgdata")
+                : Paths.get(pgDataDir);
+    }
+
+    private PgDataDirectories() {
+    }
+}
@@ -0,0 +1,124 @@
+package com.miro.persistence.tooling.core;
+
+import com.github.dockerjava.api.DockerClient;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Local cache of PGDATA snapshots, an alternative to {@code docker commit}. A snapshot is a gzipped tar of the
+ * stopped build container's PGDATA directory, keyed by image name and checksum tag. Runtime containers are started from
+ * the plain base image with the snapshot extracted before start.
+ * <p>
+ * The snapshot directory can be overridden via the {@value #SNAPSHOT_DIR_PROPERTY} system property, so CI can cache
+ * it as plain files.
+ *
+ * @author Sergey Chernov
+ */
+public final class PgDataSnapshots {
+
+    static final String SNAPSHOT_DIR_PROPERTY = "persistence-tooling.snapshot-dir";
+
+    /**
+     * PGDATA location outside the volume of the postgres image
+     */
+    public static final String PGDATA = "/var/lib/postgresql/data-no-mounted";
+
+    private static final String PGDATA_PARENT = "/var/lib/postgresql";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PgDataSnapshots.class);
+
+    public static Path getSnapshotFile(String imageName, String tag) {
+        return getSnapshotDir(imageName).resolve(tag + ".tar.gz");
+    }
+
+    public static Path getMetadataFile(String imageName, String tag) {
+        return getSnapshotDir(imageName).resolve(tag + ".properties");
+    }
+
+    /**
+     * Reads the metadata (labels) saved next to the snapshot file.
+     */
+    public static Map<String, String> readMetadata(Path snapshotFile) {
+        String fileName = snapshotFile.getFileName().toString();
+        Path metadataFile = snapshotFile.resolveSibling(
+                fileName.substring(0, fileName.length() - ".tar.gz".length()) + ".properties");
+        Properties metadata = new Properties();
+        try (InputStream in = Files.newInputStream(metadataFile)) {
+            metadata.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read PGDATA snapshot metadata " + metadataFile, e);
+        }
+        Map<String, String> labels = new HashMap<>();
+        metadata.stringPropertyNames().forEach(name -> labels.put(name, metadata.getProperty(name)));
+        return labels;
+    }
+
+    private static Path getSnapshotDir(String imageName) {
+        String snapshotDir = System.getProperty(SNAPSHOT_DIR_PROPERTY);
+        Path root = snapshotDir == null
+                ? FlywayChecksumCache.getCacheDir().resolve("snapshots")
+                : Paths.get(snapshotDir);
+        return root.resolve(imageName.replaceAll("[^A-Za-z0-9._-]", "_"));
+    }
+
+    /**
+     * Archives PGDATA of the stopped container. The metadata (labels) is written first, the snapshot file is moved
+     * in place atomically, so its presence means the snapshot is complete.
+     */
+    static void save(DockerClient dockerClient, String containerId, String imageName, String tag,
+            Map<String, String> labels) {
+        Path snapshotFile = getSnapshotFile(imageName, tag);
+        long startNanos = System.nanoTime();
+        try {
+            Files.createDirectories(snapshotFile.getParent());
+            Properties metadata = new Properties();
+            metadata.putAll(labels);
+            try (OutputStream out = Files.newOutputStream(getMetadataFile(imageName, tag))) {
+                metadata.store(out, "PGDATA snapshot " + imageName + ":" + tag);
+            }
+
+            Path tempFile = Files.createTempFile(snapshotFile.getParent(), tag, ".tmp");
+            try (InputStream tar = dockerClient.copyArchiveFromContainerCmd(containerId, PGDATA).exec();
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(tempFile), 64 * 1024)) {
+                StreamUtils.copy(tar, out);
+            }
+            Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save PGDATA snapshot " + snapshotFile, e);
+        }
+        LOGGER.info("PGDATA snapshot {} ({} KB) saved in {} ms", snapshotFile, snapshotFile.toFile().length() / 1024,
+                (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+    /**
+     * Extracts the snapshot into the created (not yet started) container. The postgres image entrypoint fixes the
+     * ownership of PGDATA on start.
+     */
+    public static void restore(DockerClient dockerClient, String containerId, Path snapshotFile) {
+        try (InputStream in = Files.newInputStream(snapshotFile)) {
+            // docker extracts compressed tar archives itself
+            dockerClient.copyArchiveToContainerCmd(containerId)
+                    .withTarInputStream(in)
+                    .withRemotePath(PGDATA_PARENT)
+                    .exec();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to restore PGDATA snapshot " + snapshotFile, e);
+        }
+    }
+
+    private PgDataSnapshots() {
+    }
+}
@@ -0,0 +1,49 @@
+package com.miro.persistence.tooling.core;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Postgres settings applied while the migrations are replayed in the build container. All settings are reloadable
+ * without restart, they are applied via {@code ALTER SYSTEM} after start and reset before the state is saved, so the
+ * saved image keeps the default runtime configuration.
+ *
+ * @author Sergey Chernov
+ */
+public enum PostgresBuildProfile {
+
+    /**
+     * Default postgres configuration.
+     */
+    DEFAULT(Collections.emptyMap()),
+
+    /**
+     * Durability off, large WAL and more memory for index builds and backfills. Crash safety is not needed, because
+     * a failed build is never saved.
+     */
+    THROUGHPUT(throughputSettings());
+
+    private final Map<String, String> settings;
+
+    PostgresBuildProfile(Map<String, String> settings) {
+        this.settings = settings;
+    }
+
+    public Map<String, String> getSettings() {
+        return settings;
+    }
+
+    private static Map<String, String> throughputSettings() {
+        Map<String, String> settings = new LinkedHashMap<>();
+        settings.put("fsync", "off");
+        settings.put("full_page_writes", "off");
+        settings.put("synchronous_commit", "off");
+        settings.put("max_wal_size", "8GB");
+        settings.put("checkpoint_timeout", "1h");
+        settings.put("autovacuum", "off");
+        settings.put("maintenance_work_mem", "1GB");
+        settings.put("work_mem", "64MB");
+        return Collections.unmodifiableMap(settings);
+    }
+}
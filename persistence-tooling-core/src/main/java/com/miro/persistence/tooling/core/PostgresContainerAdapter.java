@@ -3,21 +3,28 @@ package com.miro.persistence.tooling.core;
 import com.github.dockerjava.api.DockerClient;
 import com.github.dockerjava.api.command.CommitCmd;
 import com.github.dockerjava.api.command.InspectContainerResponse;
-import com.github.dockerjava.api.model.Image;
+import com.github.dockerjava.api.command.InspectImageResponse;
+import com.github.dockerjava.api.exception.NotFoundException;
+import jakarta.annotation.Nullable;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 import javax.script.ScriptException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.Assert;
 import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.Container.ExecResult;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.delegate.DatabaseDelegate;
 import org.testcontainers.ext.ScriptUtils;
 import org.testcontainers.ext.ScriptUtils.UncategorizedScriptException;
+import org.testcontainers.images.RemoteDockerImage;
 import org.testcontainers.utility.DockerImageName;
 
 /**
@@ -35,6 +42,8 @@ public class PostgresContainerAdapter implements PostgresExecutable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PostgresContainerAdapter.class);
 
+    private static final String PGDATA = PgDataSnapshots.PGDATA;
+
     private final DockerImageName postgresBaseImage;
 
     private PostgresContainerAdapter(String postgresBaseImageName) {
@@ -43,15 +52,76 @@ public class PostgresContainerAdapter implements PostgresExecutable {
 
     private PostgreSQLContainer<?> container;
 
+    private PostgresBuildProfile buildProfile = PostgresBuildProfile.DEFAULT;
+
+    private boolean compaction;
+
+    private PostgresStateBackend stateBackend = PostgresStateBackend.DOCKER_IMAGE;
+
+    private BuildPhaseListener buildPhaseListener = BuildPhaseListener.NOOP;
+
+    @Nullable
+    private Double cpuLimit;
+
     public static PostgresContainerAdapter createPostgresContainerAdapterFromBaseImage(String postgresBaseImageName) {
         return new PostgresContainerAdapter(postgresBaseImageName);
     }
 
+    /**
+     * Settings applied while postgres is running, they are reset before the state is saved.
+     */
+    public synchronized PostgresContainerAdapter withBuildProfile(PostgresBuildProfile buildProfile) {
+        Assert.state(container == null, "postgres is already running");
+        this.buildProfile = buildProfile;
+        return this;
+    }
+
+    /**
+     * Enables the pre-commit compaction: VACUUM (FULL, FREEZE, ANALYZE), forced checkpoint and WAL trimming. Makes the
+     * saved image smaller at the cost of the build time.
+     */
+    public synchronized PostgresContainerAdapter withCompaction(boolean compaction) {
+        Assert.state(container == null, "postgres is already running");
+        this.compaction = compaction;
+        return this;
+    }
+
+    /**
+     * Defines how {@link #saveState} persists the state: docker commit (default) or PGDATA snapshot.
+     */
+    public synchronized PostgresContainerAdapter withStateBackend(PostgresStateBackend stateBackend) {
+        Assert.state(container == null, "postgres is already running");
+        this.stateBackend = stateBackend;
+        return this;
+    }
+
+    /**
+     * Listener of the build phases timings: base image pull, container start, init scripts, compaction, checkpoint and
+     * the state saving.
+     */
+    public synchronized PostgresContainerAdapter withBuildPhaseListener(BuildPhaseListener buildPhaseListener) {
+        Assert.state(container == null, "postgres is already running");
+        this.buildPhaseListener = buildPhaseListener;
+        return this;
+    }
+
+    /**
+     * CPU limit of the container, e.g. to run several builds concurrently on one host. Unlimited if null.
+     */
+    public synchronized PostgresContainerAdapter withCpuLimit(@Nullable Double cpus) {
+        Assert.state(container == null, "postgres is already running");
+        Assert.isTrue(cpus == null || cpus > 0, "cpus should be positive");
+        this.cpuLimit = cpus;
+        return this;
+    }
+
     @Override
     public synchronized String start(String dbName, String user, String password, List<InitScript> initScripts) {
         Assert.state(container == null, "postgres is already running");
 
-        PostgreSQLContainer<?> newContainer = new InitScriptedPostgreSQLContainer(postgresBaseImage, initScripts)
+        pullBaseImage();
+        PostgreSQLContainer<?> newContainer = new InitScriptedPostgreSQLContainer(postgresBaseImage, initScripts,
+                buildPhaseListener)
                 .withDatabaseName(dbName)
                 .withUsername(user)
                 .withPassword(password);
@@ -62,10 +132,19 @@ public class PostgresContainerAdapter implements PostgresExecutable {
         an alternative option is to create own custom postgres image from scratch without volumes, but it looks complicated to maintain
         example - https://github.com/docker-library/postgres/blob/master/11/alpine/Dockerfile
         */
-        newContainer.addEnv("PGDATA", "/var/lib/postgresql/data-no-mounted");
+        newContainer.addEnv("PGDATA", PGDATA);
+        if (cpuLimit != null) {
+            long nanoCpus = (long) (cpuLimit * 1_000_000_000L);
+            newContainer.withCreateContainerCmdModifier(cmd -> cmd.getHostConfig().withNanoCPUs(nanoCpus));
+        }
 
-        newContainer.start();
+        try (BuildPhaseTimer timer = BuildPhaseTimer.start(buildPhaseListener, BuildPhase.CONTAINER_START,
+                postgresBaseImage.toString())) {
+            newContainer.start();
+            timer.succeeded();
+        }
         container = newContainer;
+        applyBuildSettings(container, buildProfile);
         return container.getJdbcUrl();
     }
 
@@ -83,79 +162,217 @@ public class PostgresContainerAdapter implements PostgresExecutable {
     }
 
     @Override
-    public synchronized void saveState(String imageName, String tag) {
+    public void saveState(String imageName, String tag) {
+        saveState(imageName, tag, Collections.emptyMap());
+    }
+
+    @Override
+    public synchronized void saveState(String imageName, String tag, Map<String, String> labels) {
         try {
             Assert.state(container != null, "postgres isn't started yet");
 
+            // the saved state should have the default runtime configuration
+            resetBuildSettings(container, buildProfile);
+            String imageNameWithTag = imageName + ":" + tag;
+            Map<String, String> stateLabels = new LinkedHashMap<>(labels);
+            stateLabels.put(PersistenceImageLabels.SCHEMA_FINGERPRINT, calculateSchemaFingerprint(container));
+            if (compaction) {
+                try (BuildPhaseTimer timer = BuildPhaseTimer.start(buildPhaseListener, BuildPhase.COMPACTION,
+                        imageNameWithTag)) {
+                    compact(container);
+                    timer.succeeded();
+                }
+            }
             // flush all data
-            doCheckpoint(container);
+            try (BuildPhaseTimer timer = BuildPhaseTimer.start(buildPhaseListener, BuildPhase.CHECKPOINT,
+                    imageNameWithTag)) {
+                doCheckpoint(container);
+                timer.succeeded();
+            }
 
-            commitContainer(container, imageName, tag);
+            if (stateBackend == PostgresStateBackend.PGDATA_SNAPSHOT) {
+                try (BuildPhaseTimer timer = BuildPhaseTimer.start(buildPhaseListener, BuildPhase.SNAPSHOT_SAVE,
+                        imageNameWithTag)) {
+                    // clean shutdown (the image uses SIGINT as stop signal), so the snapshot is consistent
+                    container.getDockerClient().stopContainerCmd(container.getContainerId()).exec();
+                    PgDataSnapshots.save(container.getDockerClient(), container.getContainerId(), imageName, tag,
+                            stateLabels);
+                    timer.imageSize(PgDataSnapshots.getSnapshotFile(imageName, tag).toFile().length()).succeeded();
+                }
+                return;
+            }
+            try (BuildPhaseTimer timer = BuildPhaseTimer.start(buildPhaseListener, BuildPhase.COMMIT,
+                    imageNameWithTag)) {
+                String imageId = commitContainer(container, imageName, tag, stateLabels);
+                Long imageSize = container.getDockerClient().inspectImageCmd(imageId).exec().getSize();
+                if (compaction) {
+                    LOGGER.info("Compacted image '{}' size: {} MB", imageNameWithTag,
+                            imageSize == null ? "n/a" : imageSize / 1024 / 1024);
+                }
+                timer.imageSize(imageSize).succeeded();
+            }
         } catch (RuntimeException e) {
             stop();
             throw new RuntimeException("Saving postgres container state failed", e);
         }
     }
 
+    /**
+     * Removes all local images of the name.
+     *
+     * @deprecated use {@link ImageGarbageCollector#collect(String, ImageRetentionPolicy)} with a retention policy
+     */
+    @Deprecated
     public static void removeOldExistedImages(String imageName) {
-        DockerClient dockerClient = DockerClientFactory.instance().client();
-        List<Image> images = dockerClient.listImagesCmd().withImageNameFilter(imageName).exec();
-        // since TestContainers 2 it returns all images, need to filter by image name
-        List<Image> filteredImages = images.stream()
-                .filter(img -> {
-                    for (String repoTag : img.getRepoTags()) {
-                        if (repoTag.contains(imageName + ":")) {
-                            return true;
-                        }
-                    }
-                    return false;
-                })
-                .collect(Collectors.toList());
-        logCurrentImagesList(filteredImages, imageName);
-        filteredImages.stream()
-                .sorted(Comparator.comparing(Image::getCreated).reversed())
-                .forEach(image -> removeExistedImage(imageName, dockerClient, image));
-    }
-
-    private static void logCurrentImagesList(Iterable<Image> images, String imageName) {
-        StringBuilder sb = new StringBuilder().append("Current images list for image name '").append(imageName).append("':\n");
-        images.forEach(image -> sb.append("Image ").append(image.getId())
-                .append(" for '").append(imageName).append("'")
-                .append(" date: ").append(image.getCreated())
-                .append(" tags: [").append(String.join(",", image.getRepoTags())).append("]")
-                .append("\n"));
-        LOGGER.info(sb.toString());
-    }
-
-    private static void removeExistedImage(String imageName, DockerClient dockerClient, Image image) {
+        ImageGarbageCollector.collect(imageName, ImageRetentionPolicy.removeAll());
+    }
+
+    /**
+     * Resolves the base image before the container start (testcontainers pulls it on demand), so the pull is timed
+     * separately.
+     */
+    @SuppressWarnings("resource")
+    private void pullBaseImage() {
+        String imageName = postgresBaseImage.toString();
+        try (BuildPhaseTimer timer = BuildPhaseTimer.start(buildPhaseListener, BuildPhase.BASE_IMAGE_PULL,
+                imageName)) {
+            DockerClient dockerClient = DockerClientFactory.instance().client();
+            InspectImageResponse image = inspectImage(dockerClient, imageName);
+            if (image == null) {
+                new RemoteDockerImage(postgresBaseImage).get();
+                image = inspectImage(dockerClient, imageName);
+                timer.cacheHit(false);
+            } else {
+                timer.cacheHit(true);
+            }
+            timer.imageSize(image == null ? null : image.getSize()).succeeded();
+        }
+    }
+
+    @Nullable
+    private static InspectImageResponse inspectImage(DockerClient dockerClient, String imageName) {
+        try {
+            return dockerClient.inspectImageCmd(imageName).exec();
+        } catch (NotFoundException e) {
+            return null;
+        }
+    }
+
+    private static void applyBuildSettings(PostgreSQLContainer<?> container, PostgresBuildProfile buildProfile) {
+        Map<String, String> settings = buildProfile.getSettings();
+        if (settings.isEmpty()) {
+            return;
+        }
+        List<String> commands = new ArrayList<>();
+        settings.forEach((name, value) -> commands.add("ALTER SYSTEM SET " + name + " = '" + value + "'"));
+        commands.add("SELECT pg_reload_conf()");
+        execPsql(container, commands);
+        LOGGER.info("Postgres build profile {} applied: {}", buildProfile, settings);
+    }
+
+    private static void resetBuildSettings(PostgreSQLContainer<?> container, PostgresBuildProfile buildProfile) {
+        Map<String, String> settings = buildProfile.getSettings();
+        if (settings.isEmpty()) {
+            return;
+        }
+        List<String> commands = new ArrayList<>();
+        settings.keySet().forEach(name -> commands.add("ALTER SYSTEM RESET " + name));
+        commands.add("SELECT pg_reload_conf()");
+        execPsql(container, commands);
+        LOGGER.info("Postgres build profile {} reset", buildProfile);
+    }
+
+    private static void compact(PostgreSQLContainer<?> container) {
+        long sizeBefore = getPgDataSizeKb(container);
+        long startNanos = System.nanoTime();
+        execPsql(container, Arrays.asList(
+                "VACUUM (FULL, FREEZE, ANALYZE)",
+                // the smallest allowed WAL size, so the checkpoint removes the extra segments
+                "ALTER SYSTEM SET min_wal_size = '32MB'",
+                "ALTER SYSTEM SET max_wal_size = '32MB'",
+                "SELECT pg_reload_conf()",
+                "SELECT pg_switch_wal()",
+                "CHECKPOINT",
+                "CHECKPOINT",
+                "ALTER SYSTEM RESET min_wal_size",
+                "ALTER SYSTEM RESET max_wal_size",
+                "SELECT pg_reload_conf()"
+        ));
+        long sizeAfter = getPgDataSizeKb(container);
+        LOGGER.info("Postgres compaction finished in {} ms, PGDATA size before: {} MB, after: {} MB",
+                (System.nanoTime() - startNanos) / 1_000_000, sizeBefore / 1024, sizeAfter / 1024);
+    }
+
+    private static long getPgDataSizeKb(PostgreSQLContainer<?> container) {
         try {
-            LOGGER.info("Try to remove old image {} for '{}' date: {} tags: {}", image.getId(), imageName, image.getCreated(), image.getRepoTags());
-            dockerClient.removeImageCmd(image.getId()).exec();
-        } catch (Exception ex) {
-            LOGGER.error("Remove old image {} for '{}' date: {} tags: {} failed", image.getId(), imageName, image.getCreated(), image.getRepoTags(), ex);
+            ExecResult result = container.execInContainer("du", "-sk", PGDATA);
+            if (result.getExitCode() != 0) {
+                throw new IllegalStateException("du " + PGDATA + " failed: " + result.getStderr());
+            }
+            return Long.parseLong(result.getStdout().trim().split("\\s+")[0]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while calculating PGDATA size", e);
         }
     }
 
+    private static String calculateSchemaFingerprint(PostgreSQLContainer<?> container) {
+        // a single -c is a single implicit transaction, psql prints the result of the last statement
+        String[] lines = execPsql(container, Collections.singletonList(SchemaFingerprint.FINGERPRINT_SQL))
+                .trim()
+                .split("\n");
+        String fingerprint = lines[lines.length - 1].trim();
+        LOGGER.info("Schema fingerprint: {}", fingerprint);
+        return fingerprint;
+    }
+
     private static void doCheckpoint(@SuppressWarnings("TypeMayBeWeakened") PostgreSQLContainer<?> container) {
+        execPsql(container, Collections.singletonList("checkpoint"));
+        LOGGER.info("Postgres checkpoint finished");
+    }
+
+    /**
+     * Executes each command separately (e.g. ALTER SYSTEM can't be executed in a transaction block), fails on error.
+     */
+    private static String execPsql(PostgreSQLContainer<?> container, List<String> commands) {
+        List<String> args = new ArrayList<>(Arrays.asList("psql", "-v", "ON_ERROR_STOP=1", "-At",
+                "-U", container.getUsername(), "-d", container.getDatabaseName()));
+        for (String command : commands) {
+            args.add("-c");
+            args.add(command);
+        }
         try {
-            container.execInContainer("psql", "-c", "checkpoint");
-            LOGGER.info("Postgres checkpoint finished");
-        } catch (IOException | InterruptedException e) {
-            throw new RuntimeException(e);
+            ExecResult result = container.execInContainer(args.toArray(new String[0]));
+            if (result.getExitCode() != 0) {
+                throw new IllegalStateException("psql " + commands + " failed with exit code "
+                        + result.getExitCode() + ": " + result.getStderr());
+            }
+            return result.getStdout();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while executing psql " + commands, e);
         }
     }
 
-    private static void commitContainer(PostgreSQLContainer<?> container, String imageName, String tag) {
+    private static String commitContainer(PostgreSQLContainer<?> container, String imageName, String tag,
+            Map<String, String> labels) {
+        Map<String, String> imageLabels = new LinkedHashMap<>(labels);
+        // set this label to skip image deletion by ryuk
+        // https://stackoverflow.com/a/71613399
+        imageLabels.put("org.testcontainers", "false");
         CommitCmd cmd = container.getDockerClient().commitCmd(container.getContainerId())
                 .withMessage("Container for integration tests. It uses non default location for PGDATA which is not mounted to a volume")
                 .withRepository(imageName)
                 .withTag(tag)
-                // set this label to skip image deletion by ryuk
-                // https://stackoverflow.com/a/71613399
-                .withLabels(Collections.singletonMap("org.testcontainers", "false"));
+                .withLabels(imageLabels);
         String imageId = cmd.exec();
         LOGGER.info("Container commit finished. New image '{}:{}' with id {} has been created for containerId {}",
                 imageName, tag, imageId, container.getContainerId());
+        return imageId;
     }
 
     /**
@@ -165,15 +382,29 @@ public class PostgresContainerAdapter implements PostgresExecutable {
 
         private final List<InitScript> initScripts;
 
-        InitScriptedPostgreSQLContainer(DockerImageName imageName, List<InitScript> initScripts) {
+        private final BuildPhaseListener buildPhaseListener;
+
+        InitScriptedPostgreSQLContainer(
+                DockerImageName imageName,
+                List<InitScript> initScripts,
+                BuildPhaseListener buildPhaseListener
+        ) {
             super(imageName);
             this.initScripts = initScripts;
+            this.buildPhaseListener = buildPhaseListener;
         }
 
         @Override
         protected void containerIsStarted(InspectContainerResponse containerInfo) {
             super.containerIsStarted(containerInfo);
-            runInitScripts(getDatabaseDelegate(), initScripts);
+            if (initScripts.isEmpty()) {
+                return;
+            }
+            try (BuildPhaseTimer timer = BuildPhaseTimer.start(buildPhaseListener, BuildPhase.INIT_SCRIPTS,
+                    getDockerImageName())) {
+                runInitScripts(getDatabaseDelegate(), initScripts);
+                timer.succeeded();
+            }
         }
 
         /**
@@ -1,6 +1,7 @@
 package com.miro.persistence.tooling.core;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Nikolai Averin
@@ -20,6 +21,14 @@ public interface PostgresExecutable {
      */
     void saveState(String imageName, String tag);
 
+    /**
+     * Saves state of postgres with associated name and metadata labels, e.g. {@link FlywayChecksum#toImageLabels()}.
+     * Implementations not supporting labels ignore them.
+     */
+    default void saveState(String imageName, String tag, Map<String, String> labels) {
+        saveState(imageName, tag);
+    }
+
     void stop();
 
     String getBaseImageName();
@@ -0,0 +1,20 @@
+package com.miro.persistence.tooling.core;
+
+/**
+ * How the container of the migrated database runs in tests.
+ *
+ * @author Sergey Chernov
+ */
+public enum PostgresRuntimeMode {
+
+    /**
+     * PGDATA is used from the container filesystem as is.
+     */
+    DEFAULT,
+
+    /**
+     * PGDATA is copied into a tmpfs mount on start, postgres runs with fsync, synchronous_commit and full_page_writes
+     * off. The data is lost when the container stops, which is fine for throwaway test databases.
+     */
+    TMPFS
+}
@@ -0,0 +1,20 @@
+package com.miro.persistence.tooling.core;
+
+/**
+ * How the state of the migrated postgres is persisted.
+ *
+ * @author Sergey Chernov
+ */
+public enum PostgresStateBackend {
+
+    /**
+     * The build container is committed to a docker image, see {@link PostgresContainerAdapter}.
+     */
+    DOCKER_IMAGE,
+
+    /**
+     * PGDATA of the stopped build container is archived to a local file, runtime containers are started from the base
+     * image with the snapshot extracted, see {@link PgDataSnapshots}.
+     */
+    PGDATA_SNAPSHOT
+}
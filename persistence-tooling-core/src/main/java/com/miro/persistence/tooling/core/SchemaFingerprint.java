@@ -0,0 +1,110 @@
+package com.miro.persistence.tooling.core;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.springframework.util.Assert;
+
+/**
+ * Hash of the normalized schema: relations, columns, constraints, indexes, views, functions, triggers and enums of the
+ * non-system schemas, plus the versions and checksums of the Flyway history tables. It's calculated in the build
+ * container before the state is saved and stored as the {@link PersistenceImageLabels#SCHEMA_FINGERPRINT} image label,
+ * so a running container can be verified with a single query instead of Flyway and Hibernate schema validation.
+ * <p>
+ * The object definitions are rendered with {@code search_path = pg_catalog} (all names are qualified), so the result
+ * doesn't depend on the search path of the connection.
+ *
+ * @author Sergey Chernov
+ */
+public final class SchemaFingerprint {
+
+    private static final String USER_SCHEMA = "n.nspname <> 'information_schema' AND n.nspname NOT LIKE 'pg\\_%'";
+
+    /**
+     * Two statements executed as one implicit transaction, so {@code SET LOCAL} applies only to the query.
+     */
+    static final String FINGERPRINT_SQL = "SET LOCAL search_path = pg_catalog; "
+            + "SELECT md5(string_agg(item, E'\\n' ORDER BY item COLLATE \"C\")) FROM ("
+            + "SELECT 'relation ' || c.oid::regclass || ' ' || c.relkind AS item "
+            + "FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace "
+            + "WHERE c.relkind IN ('r', 'p', 'v', 'm', 'f', 'S', 'c') AND " + USER_SCHEMA
+            + " UNION ALL "
+            + "SELECT 'column ' || c.oid::regclass || ' ' || a.attnum || ' ' || quote_ident(a.attname) || ' '"
+            + " || format_type(a.atttypid, a.atttypmod)"
+            + " || CASE WHEN a.attnotnull THEN ' NOT NULL' ELSE '' END"
+            + " || coalesce(' DEFAULT ' || pg_get_expr(d.adbin, d.adrelid), '') "
+            + "FROM pg_attribute a JOIN pg_class c ON c.oid = a.attrelid "
+            + "JOIN pg_namespace n ON n.oid = c.relnamespace "
+            + "LEFT JOIN pg_attrdef d ON d.adrelid = a.attrelid AND d.adnum = a.attnum "
+            + "WHERE a.attnum > 0 AND NOT a.attisdropped AND c.relkind IN ('r', 'p', 'v', 'm', 'f', 'c') AND "
+            + USER_SCHEMA
+            + " UNION ALL "
+            + "SELECT 'constraint ' || c.oid::regclass || ' ' || quote_ident(con.conname) || ' '"
+            + " || pg_get_constraintdef(con.oid) "
+            + "FROM pg_constraint con JOIN pg_class c ON c.oid = con.conrelid "
+            + "JOIN pg_namespace n ON n.oid = c.relnamespace WHERE " + USER_SCHEMA
+            + " UNION ALL "
+            + "SELECT 'index ' || pg_get_indexdef(i.indexrelid) "
+            + "FROM pg_index i JOIN pg_class c ON c.oid = i.indrelid "
+            + "JOIN pg_namespace n ON n.oid = c.relnamespace WHERE " + USER_SCHEMA
+            + " UNION ALL "
+            + "SELECT 'view ' || c.oid::regclass || ' ' || pg_get_viewdef(c.oid) "
+            + "FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace "
+            + "WHERE c.relkind IN ('v', 'm') AND " + USER_SCHEMA
+            + " UNION ALL "
+            + "SELECT 'function ' || p.oid::regprocedure || ' '"
+            + " || CASE WHEN p.prokind IN ('f', 'p') THEN md5(pg_get_functiondef(p.oid)) ELSE p.prokind::text END "
+            + "FROM pg_proc p JOIN pg_namespace n ON n.oid = p.pronamespace WHERE " + USER_SCHEMA
+            + " UNION ALL "
+            + "SELECT 'trigger ' || pg_get_triggerdef(t.oid) "
+            + "FROM pg_trigger t JOIN pg_class c ON c.oid = t.tgrelid "
+            + "JOIN pg_namespace n ON n.oid = c.relnamespace WHERE NOT t.tgisinternal AND " + USER_SCHEMA
+            + " UNION ALL "
+            + "SELECT 'enum ' || e.enumtypid::regtype || ' ' || e.enumsortorder || ' ' || e.enumlabel "
+            + "FROM pg_enum e JOIN pg_type ty ON ty.oid = e.enumtypid "
+            + "JOIN pg_namespace n ON n.oid = ty.typnamespace WHERE " + USER_SCHEMA
+            + " UNION ALL "
+            // Flyway history tables are recognized by their columns
+            + "SELECT 'history ' || c.oid::regclass || ' ' || md5(query_to_xml(format("
+            + "'SELECT version, checksum, success FROM %s ORDER BY installed_rank', c.oid::regclass),"
+            + " false, false, '')::text) "
+            + "FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace "
+            + "WHERE c.relkind = 'r' AND " + USER_SCHEMA
+            + " AND (SELECT count(*) FROM pg_attribute a WHERE a.attrelid = c.oid AND NOT a.attisdropped"
+            + " AND a.attname IN ('installed_rank', 'version', 'checksum', 'success')) = 4"
+            + ") items";
+
+    /**
+     * Calculates the fingerprint of the database of the connection in a single round trip. The connection should be
+     * in the auto-commit mode.
+     */
+    public static String calculate(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            boolean resultSet = statement.execute(FINGERPRINT_SQL);
+            while (!resultSet && statement.getUpdateCount() != -1) {
+                resultSet = statement.getMoreResults();
+            }
+            Assert.state(resultSet, "Schema fingerprint query returned no result");
+            try (ResultSet rs = statement.getResultSet()) {
+                Assert.state(rs.next(), "Schema fingerprint query returned no rows");
+                return rs.getString(1);
+            }
+        }
+    }
+
+    /**
+     * Verifies the database of the connection against the expected fingerprint, e.g. the
+     * {@link PersistenceImageLabels#SCHEMA_FINGERPRINT} label of the image.
+     *
+     * @throws IllegalStateException if the fingerprint doesn't match
+     */
+    public static void verify(Connection connection, String expectedFingerprint) throws SQLException {
+        String fingerprint = calculate(connection);
+        Assert.state(expectedFingerprint.equals(fingerprint), () -> "Schema fingerprint " + fingerprint
+                + " doesn't match the expected fingerprint " + expectedFingerprint);
+    }
+
+    private SchemaFingerprint() {
+    }
+}
@@ -0,0 +1,74 @@
+package com.miro.persistence.tooling.core;
+
+import java.util.Objects;
+
+/**
+ * Migrations of an independent schema with its own location and history table, applied concurrently with the other
+ * migrations of {@link FlywayMigrationSet} into the same build container.
+ *
+ * @author Sergey Chernov
+ * @see FlywayMigrationSet.Builder#schemaMigrations(SchemaMigrations...)
+ */
+public final class SchemaMigrations {
+
+    private final String schema;
+    private final String migrationResourcesPath;
+    private final String flywayTable;
+
+    private SchemaMigrations(String schema, String migrationResourcesPath, String flywayTable) {
+        this.schema = Objects.requireNonNull(schema, "schema is null");
+        this.migrationResourcesPath = Objects.requireNonNull(migrationResourcesPath, "migrationResourcesPath is null");
+        this.flywayTable = Objects.requireNonNull(flywayTable, "flywayTable is null");
+    }
+
+    /**
+     * Schema migrations with the history table {@code schema_version} in the schema.
+     */
+    public static SchemaMigrations of(String schema, String migrationResourcesPath) {
+        return of(schema, migrationResourcesPath, "schema_version");
+    }
+
+    public static SchemaMigrations of(String schema, String migrationResourcesPath, String flywayTable) {
+        return new SchemaMigrations(schema, migrationResourcesPath, flywayTable);
+    }
+
+    public String getSchema() {
+        return schema;
+    }
+
+    public String getMigrationResourcesPath() {
+        return migrationResourcesPath;
+    }
+
+    public String getFlywayTable() {
+        return flywayTable;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SchemaMigrations)) {
+            return false;
+        }
+        SchemaMigrations that = (SchemaMigrations) o;
+        return schema.equals(that.schema)
+                && migrationResourcesPath.equals(that.migrationResourcesPath)
+                && flywayTable.equals(that.flywayTable);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(schema, migrationResourcesPath, flywayTable);
+    }
+
+    @Override
+    public String toString() {
+        return "SchemaMigrations{" +
+            "schema='" + schema + '\'' +
+            ", migrationResourcesPath='" + migrationResourcesPath + '\'' +
+            ", flywayTable='" + flywayTable + '\'' +
+            '}';
+    }
+}
@@ -0,0 +1,112 @@
+package com.miro.persistence.tooling.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+
+/**
+ * A file of reference or fixture data streamed into a table via {@code COPY} after the migrations, so it's baked into
+ * the image. The file is part of the image tag.
+ *
+ * @author Sergey Chernov
+ * @see FlywayMigrationSet.Builder#seedData(SeedData...)
+ */
+public final class SeedData {
+
+    public enum Format {
+        /**
+         * CSV with a header line, the columns are in the order of the table columns.
+         */
+        CSV("(FORMAT csv, HEADER true)"),
+        /**
+         * Binary format of {@code COPY ... TO ... (FORMAT binary)}.
+         */
+        BINARY("(FORMAT binary)");
+
+        private final String copyOptions;
+
+        Format(String copyOptions) {
+            this.copyOptions = copyOptions;
+        }
+    }
+
+    private final String table;
+    private final String path;
+    private final Format format;
+
+    private SeedData(String table, String path, Format format) {
+        this.table = Objects.requireNonNull(table, "table is null");
+        this.path = Objects.requireNonNull(path, "path is null");
+        this.format = Objects.requireNonNull(format, "format is null");
+    }
+
+    /**
+     * @param table table name, optionally qualified by the schema
+     * @param path  classpath resource or {@code filesystem:} path
+     */
+    public static SeedData csv(String table, String path) {
+        return new SeedData(table, path, Format.CSV);
+    }
+
+    /**
+     * @param table table name, optionally qualified by the schema
+     * @param path  classpath resource or {@code filesystem:} path
+     */
+    public static SeedData binary(String table, String path) {
+        return new SeedData(table, path, Format.BINARY);
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public String getCopySql() {
+        return "COPY " + table + " FROM STDIN " + format.copyOptions;
+    }
+
+    public InputStream openInputStream() throws IOException {
+        return getResource().getInputStream();
+    }
+
+    Resource getResource() {
+        return new DefaultResourceLoader().getResource(MigrationCatalog.adaptResourcePath(path));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SeedData)) {
+            return false;
+        }
+        SeedData that = (SeedData) o;
+        return table.equals(that.table)
+                && path.equals(that.path)
+                && format == that.format;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(table, path, format);
+    }
+
+    @Override
+    public String toString() {
+        return "SeedData{" +
+            "table='" + table + '\'' +
+            ", path='" + path + '\'' +
+            ", format=" + format +
+            '}';
+    }
+}
@@ -0,0 +1,37 @@
+package com.miro.persistence.tooling.test;
+
+import java.util.concurrent.CancellationException;
+import org.flywaydb.core.api.callback.BaseCallback;
+import org.flywaydb.core.api.callback.Context;
+import org.flywaydb.core.api.callback.Event;
+
+/**
+ * Stops Flyway before the next migration once the build thread is interrupted, e.g. when the build is superseded in
+ * {@link MigrationWatcher}. The migrations may run on other threads than the build thread.
+ *
+ * @author Sergey Chernov
+ */
+final class BuildCancellationCallback extends BaseCallback {
+
+    private final Thread buildThread;
+
+    BuildCancellationCallback(Thread buildThread) {
+        this.buildThread = buildThread;
+    }
+
+    @Override
+    public boolean supports(Event event, Context context) {
+        return event == Event.BEFORE_EACH_MIGRATE;
+    }
+
+    @Override
+    public void handle(Event event, Context context) {
+        checkNotCancelled(buildThread);
+    }
+
+    static void checkNotCancelled(Thread buildThread) {
+        if (buildThread.isInterrupted()) {
+            throw new CancellationException("Image build is cancelled");
+        }
+    }
+}
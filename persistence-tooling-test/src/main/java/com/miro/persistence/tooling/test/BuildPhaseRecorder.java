@@ -0,0 +1,53 @@
+package com.miro.persistence.tooling.test;
+
+import com.miro.persistence.tooling.core.BuildPhase;
+import com.miro.persistence.tooling.core.BuildPhaseEvent;
+import com.miro.persistence.tooling.core.BuildPhaseListener;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Collects the phases of a single image resolution for the summary log line and forwards them to the delegate.
+ *
+ * @author Sergey Chernov
+ */
+class BuildPhaseRecorder implements BuildPhaseListener {
+
+    private final BuildPhaseListener delegate;
+
+    private final long startNanos = System.nanoTime();
+
+    private final Map<BuildPhase, long[]> phases = new LinkedHashMap<>();
+
+    BuildPhaseRecorder(BuildPhaseListener delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void phaseFinished(BuildPhaseEvent event) {
+        synchronized (phases) {
+            long[] countAndNanos = phases.computeIfAbsent(event.getPhase(), phase -> new long[2]);
+            countAndNanos[0]++;
+            countAndNanos[1] += event.getDuration().toNanos();
+        }
+        delegate.phaseFinished(event);
+    }
+
+    long getElapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /**
+     * Phases in order of their first completion with total duration, e.g. {@code CHECKSUM 12 ms, FIND_IMAGE 2x 5 ms}.
+     */
+    String getSummary() {
+        synchronized (phases) {
+            return phases.entrySet().stream()
+                    .map(entry -> entry.getKey()
+                            + (entry.getValue()[0] > 1 ? " " + entry.getValue()[0] + "x " : " ")
+                            + entry.getValue()[1] / 1_000_000 + " ms")
+                    .collect(Collectors.joining(", "));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.miro.persistence.tooling.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Administration of the databases inside a running container: connections, identifier quoting and the server version
+ * checks shared by {@link PostgreSQLTemplateDatabasePool} and {@link ReusableContainers}.
+ *
+ * @author Sergey Chernov
+ */
+final class ContainerDatabases {
+
+    static final String MAINTENANCE_DATABASE = "postgres";
+
+    /**
+     * PostgreSQL 15 added WAL_LOG strategy as default, FILE_COPY is faster for the template cloning
+     */
+    private static final int FILE_COPY_STRATEGY_MIN_VERSION = 150000;
+
+    /**
+     * PostgreSQL 13 added DROP DATABASE ... WITH (FORCE)
+     */
+    private static final int FORCE_DROP_MIN_VERSION = 130000;
+
+    static Connection connect(PostgreSQLContainer<?> container, String database) throws SQLException {
+        return DriverManager.getConnection(getJdbcUrl(container, database), container.getUsername(),
+                container.getPassword());
+    }
+
+    static String getJdbcUrl(PostgreSQLContainer<?> container, String database) {
+        return "jdbc:postgresql://" + container.getHost() + ":"
+                + container.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT) + "/" + database;
+    }
+
+    static String quote(String identifier) {
+        return '"' + identifier.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * @return server version number, e.g. 150004 for 15.4
+     */
+    static int getServerVersion(Statement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery("SHOW server_version_num")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    /**
+     * Clause of {@code CREATE DATABASE ... TEMPLATE} choosing the fastest clone strategy of the server version.
+     */
+    static String getCloneStrategyClause(int serverVersion) {
+        return serverVersion >= FILE_COPY_STRATEGY_MIN_VERSION ? " STRATEGY FILE_COPY" : "";
+    }
+
+    /**
+     * Drops the database terminating its connections, on servers older than 13 the connections are terminated
+     * before the drop.
+     */
+    static void dropDatabase(Statement statement, String database, int serverVersion) throws SQLException {
+        if (serverVersion >= FORCE_DROP_MIN_VERSION) {
+            statement.execute("DROP DATABASE IF EXISTS " + quote(database) + " WITH (FORCE)");
+            return;
+        }
+        // new connections are forbidden first, so none appears between the termination and the drop
+        statement.execute("ALTER DATABASE " + quote(database) + " WITH ALLOW_CONNECTIONS false");
+        statement.execute("SELECT pg_terminate_backend(pid) FROM pg_stat_activity WHERE datname = '" + database + "'");
+        statement.execute("DROP DATABASE IF EXISTS " + quote(database));
+    }
+
+    private ContainerDatabases() {
+    }
+}
@@ -0,0 +1,64 @@
+package com.miro.persistence.tooling.test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * JUnit 5 extension truncating the tables modified by the test after each test, instead of truncating all tables or
+ * recreating the context. The sequences used by the truncated tables are restarted, the tables referencing them
+ * are truncated too. The image should be built with {@code FlywayMigrationSet.Builder#dirtyTableTracking(true)}.
+ * <p>
+ * Usage:
+ * <pre>{@code
+ * @RegisterExtension
+ * static DirtyTableResetExtension RESET = DirtyTableResetExtension.forContainer(CONTAINER);
+ * }</pre>
+ * Data baked into the image (e.g. by the migrations) is lost in the truncated tables.
+ *
+ * @author Sergey Chernov
+ */
+public class DirtyTableResetExtension implements AfterEachCallback {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirtyTableResetExtension.class);
+
+    private final ConnectionFactory connectionFactory;
+
+    /**
+     * @param connectionFactory connections to the database of the test, it's called after each test, so it can be
+     *                          backed by a data source created later than the extension (e.g. a spring bean)
+     */
+    public DirtyTableResetExtension(ConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    public static DirtyTableResetExtension forContainer(PostgreSQLContainer<?> container) {
+        return new DirtyTableResetExtension(() -> container.createConnection(""));
+    }
+
+    public static DirtyTableResetExtension forDataSource(DataSource dataSource) {
+        return new DirtyTableResetExtension(dataSource::getConnection);
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) throws SQLException {
+        long startNanos = System.nanoTime();
+        int tableCount;
+        try (Connection connection = connectionFactory.getConnection()) {
+            tableCount = DirtyTableTracking.reset(connection);
+        }
+        LOGGER.debug("{} dirty tables reset after {} in {} ms", tableCount, context.getDisplayName(),
+                (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+    @FunctionalInterface
+    public interface ConnectionFactory {
+
+        Connection getConnection() throws SQLException;
+    }
+}
@@ -0,0 +1,110 @@
+package com.miro.persistence.tooling.test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Statement-level triggers recording the tables modified by tests into an unlogged table. The triggers are installed
+ * into the build container after the migrations, so the recording costs a single lookup per modifying statement.
+ * The reset truncates the recorded tables and restarts their sequences in a single round trip.
+ *
+ * @author Sergey Chernov
+ */
+final class DirtyTableTracking {
+
+    private static final String UNDEFINED_FUNCTION_SQL_STATE = "42883";
+
+    private static final String INSTALL_SQL = String.join("\n",
+            "CREATE SCHEMA IF NOT EXISTS persistence_tooling;",
+            "CREATE UNLOGGED TABLE IF NOT EXISTS persistence_tooling.dirty_tables (table_oid oid NOT NULL);",
+            // no unique constraint: concurrent transactions never wait for each other on the tracking rows
+            "CREATE OR REPLACE FUNCTION persistence_tooling.mark_dirty() RETURNS trigger LANGUAGE plpgsql AS $$",
+            "BEGIN",
+            "    IF NOT EXISTS (SELECT 1 FROM persistence_tooling.dirty_tables WHERE table_oid = TG_RELID) THEN",
+            "        INSERT INTO persistence_tooling.dirty_tables VALUES (TG_RELID);",
+            "    END IF;",
+            "    RETURN NULL;",
+            "END $$;",
+            "CREATE OR REPLACE FUNCTION persistence_tooling.reset_dirty_tables() RETURNS integer",
+            "LANGUAGE plpgsql AS $$",
+            "DECLARE",
+            "    tables text;",
+            "    table_count integer;",
+            "    seq regclass;",
+            "BEGIN",
+            "    SELECT string_agg(DISTINCT c.oid::regclass::text, ', '), count(DISTINCT c.oid)",
+            "    INTO tables, table_count",
+            "    FROM persistence_tooling.dirty_tables d",
+            "    JOIN pg_class c ON c.oid = d.table_oid;",
+            "    IF tables IS NOT NULL THEN",
+            "        EXECUTE 'TRUNCATE ' || tables || ' RESTART IDENTITY CASCADE';",
+            "    END IF;",
+            // RESTART IDENTITY covers only the owned sequences, e.g. not the ones created for nextval() defaults
+            "    FOR seq IN",
+            "        SELECT DISTINCT s.oid::regclass",
+            "        FROM persistence_tooling.dirty_tables d",
+            "        JOIN pg_attrdef ad ON ad.adrelid = d.table_oid",
+            "        JOIN pg_depend dep ON dep.classid = 'pg_attrdef'::regclass AND dep.objid = ad.oid",
+            "        JOIN pg_class s ON s.oid = dep.refobjid AND s.relkind = 'S'",
+            "    LOOP",
+            "        EXECUTE format('ALTER SEQUENCE %s RESTART', seq);",
+            "    END LOOP;",
+            "    TRUNCATE persistence_tooling.dirty_tables;",
+            "    RETURN table_count;",
+            "END $$;",
+            "DO $$",
+            "DECLARE",
+            "    rel regclass;",
+            "BEGIN",
+            "    FOR rel IN",
+            "        SELECT c.oid::regclass",
+            "        FROM pg_class c",
+            "        JOIN pg_namespace n ON n.oid = c.relnamespace",
+            "        WHERE c.relkind IN ('r', 'p')",
+            "          AND n.nspname NOT IN ('information_schema', 'persistence_tooling')",
+            "          AND n.nspname NOT LIKE 'pg\\_%'",
+            "          AND NOT EXISTS (SELECT 1 FROM pg_trigger t",
+            "                          WHERE t.tgrelid = c.oid AND t.tgname = 'persistence_tooling_dirty')",
+            "    LOOP",
+            "        EXECUTE format('CREATE TRIGGER persistence_tooling_dirty"
+                    + " AFTER INSERT OR UPDATE OR DELETE ON %s"
+                    + " FOR EACH STATEMENT EXECUTE FUNCTION persistence_tooling.mark_dirty()', rel);",
+            "    END LOOP;",
+            "END $$;",
+            // the migrations of an incremental build fire the triggers of the ancestor image
+            "TRUNCATE persistence_tooling.dirty_tables;");
+
+    private static final String RESET_SQL = "SELECT persistence_tooling.reset_dirty_tables()";
+
+    /**
+     * Installs the triggers on all tables which don't have them yet, e.g. the tables created by the migrations on top
+     * of an ancestor image.
+     */
+    static void install(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(INSTALL_SQL);
+        }
+    }
+
+    /**
+     * @return number of the truncated tables, not counting the tables truncated by {@code CASCADE}
+     */
+    static int reset(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(RESET_SQL)) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        } catch (SQLException e) {
+            if (UNDEFINED_FUNCTION_SQL_STATE.equals(e.getSQLState())) {
+                throw new IllegalStateException("Dirty table tracking is not installed in the database, "
+                        + "enable FlywayMigrationSet.Builder#dirtyTableTracking", e);
+            }
+            throw e;
+        }
+    }
+
+    private DirtyTableTracking() {
+    }
+}
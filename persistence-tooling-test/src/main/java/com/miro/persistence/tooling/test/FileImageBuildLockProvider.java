@@ -0,0 +1,106 @@
+package com.miro.persistence.tooling.test;
+
+import jakarta.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.springframework.util.Assert;
+
+/**
+ * {@link ImageBuildLockProvider} based on file locks in a directory shared by the processes, e.g. surefire forks on
+ * the same CI agent. File locks are held by the whole JVM, so the threads of the same JVM are additionally serialized
+ * via in-memory locks. The locks are not reentrant, the thread holding the lock fails to acquire it again. The
+ * directory can be overridden via the {@value #LOCK_DIR_PROPERTY} system property.
+ *
+ * @author Sergey Chernov
+ */
+public class FileImageBuildLockProvider implements ImageBuildLockProvider {
+
+    static final String LOCK_DIR_PROPERTY = "persistence-tooling.lock-dir";
+
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    private static final ConcurrentMap<Path, ReentrantLock> JVM_LOCKS = new ConcurrentHashMap<>();
+
+    private final Path lockDir;
+
+    public FileImageBuildLockProvider(Path lockDir) {
+        this.lockDir = lockDir;
+    }
+
+    public static FileImageBuildLockProvider createDefault() {
+        String lockDir = System.getProperty(LOCK_DIR_PROPERTY);
+        return new FileImageBuildLockProvider(lockDir == null
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "persistence-tooling-locks")
+                : Paths.get(lockDir));
+    }
+
+    @Nullable
+    @Override
+    public Lock acquire(String imageNameWithTag, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        Path lockFile = lockDir.resolve(imageNameWithTag.replaceAll("[^A-Za-z0-9._-]", "_") + ".lock");
+        ReentrantLock jvmLock = JVM_LOCKS.computeIfAbsent(lockFile, file -> new ReentrantLock());
+        // the file lock is held by the JVM, so locking the file again would fail with OverlappingFileLockException
+        Assert.state(!jvmLock.isHeldByCurrentThread(),
+                () -> "Lock " + lockFile + " is already held by the current thread");
+        if (!jvmLock.tryLock(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+            return null;
+        }
+        FileLock fileLock = null;
+        try {
+            fileLock = lockFile(lockFile, deadline);
+        } finally {
+            if (fileLock == null) {
+                jvmLock.unlock();
+            }
+        }
+        if (fileLock == null) {
+            return null;
+        }
+        FileLock acquiredLock = fileLock;
+        return () -> {
+            try {
+                acquiredLock.channel().close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to release lock " + lockFile, e);
+            } finally {
+                jvmLock.unlock();
+            }
+        };
+    }
+
+    @Nullable
+    private FileLock lockFile(Path lockFile, long deadline) throws InterruptedException {
+        try {
+            Files.createDirectories(lockDir);
+            // lock files are never deleted, deletion can't be done safely while other processes wait
+            FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            boolean locked = false;
+            try {
+                FileLock fileLock;
+                while ((fileLock = channel.tryLock()) == null && System.nanoTime() < deadline) {
+                    Thread.sleep(POLL_INTERVAL_MILLIS);
+                }
+                locked = fileLock != null;
+                return fileLock;
+            } finally {
+                if (!locked) {
+                    channel.close();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to acquire lock " + lockFile, e);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.miro.persistence.tooling.test;
+
+import java.util.Objects;
+import org.springframework.util.Assert;
+
+/**
+ * Limits of the concurrent image builds of {@link PostgreSQLTestContainerTool#prepareAll}: the number of the build
+ * containers running at the same time and the total number of CPUs they may use. The CPUs are split evenly between
+ * the build containers.
+ *
+ * @author Sergey Chernov
+ */
+public final class ImageBuildLimits {
+
+    private final int maxConcurrentBuilds;
+    private final double maxCpus;
+
+    private ImageBuildLimits(Builder builder) {
+        Assert.isTrue(builder.maxConcurrentBuilds > 0, "maxConcurrentBuilds should be positive");
+        Assert.isTrue(builder.maxCpus > 0, "maxCpus should be positive");
+        this.maxConcurrentBuilds = builder.maxConcurrentBuilds;
+        this.maxCpus = builder.maxCpus;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Half of the available processors as the build containers, all available processors as the CPU limit.
+     */
+    public static ImageBuildLimits defaults() {
+        return builder().build();
+    }
+
+    public int getMaxConcurrentBuilds() {
+        return maxConcurrentBuilds;
+    }
+
+    public double getMaxCpus() {
+        return maxCpus;
+    }
+
+    /**
+     * CPU limit of a single build container.
+     */
+    public double getCpusPerBuild() {
+        return maxCpus / maxConcurrentBuilds;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ImageBuildLimits)) {
+            return false;
+        }
+        ImageBuildLimits that = (ImageBuildLimits) o;
+        return maxConcurrentBuilds == that.maxConcurrentBuilds
+                && Double.compare(maxCpus, that.maxCpus) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(maxConcurrentBuilds, maxCpus);
+    }
+
+    @Override
+    public String toString() {
+        return "ImageBuildLimits{" +
+            "maxConcurrentBuilds=" + maxConcurrentBuilds +
+            ", maxCpus=" + maxCpus +
+            '}';
+    }
+
+    public static class Builder {
+
+        private int maxConcurrentBuilds = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        private double maxCpus = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Max number of the build containers running at the same time.
+         */
+        public Builder maxConcurrentBuilds(int maxConcurrentBuilds) {
+            this.maxConcurrentBuilds = maxConcurrentBuilds;
+            return this;
+        }
+
+        /**
+         * Max total number of CPUs of the build containers, fractions are allowed.
+         */
+        public Builder maxCpus(double maxCpus) {
+            this.maxCpus = maxCpus;
+            return this;
+        }
+
+        public ImageBuildLimits build() {
+            return new ImageBuildLimits(this);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.miro.persistence.tooling.test;
+
+import jakarta.annotation.Nullable;
+import java.time.Duration;
+
+/**
+ * Provides locks to make sure only one process builds an image while other processes wait and reuse the result.
+ *
+ * @author Sergey Chernov
+ * @see FileImageBuildLockProvider
+ */
+public interface ImageBuildLockProvider {
+
+    /**
+     * Acquires an exclusive lock for the image, waits up to {@code timeout}.
+     *
+     * @param imageNameWithTag image name with tag, e.g. "postgres-it-example:V2-33f7f7"
+     * @param timeout          max time to wait
+     * @return acquired lock or null if the lock was not acquired in time
+     */
+    @Nullable
+    Lock acquire(String imageNameWithTag, Duration timeout) throws InterruptedException;
+
+    interface Lock extends AutoCloseable {
+
+        /**
+         * Releases the lock.
+         */
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,103 @@
+package com.miro.persistence.tooling.test;
+
+import com.miro.persistence.tooling.core.FlywayMigrationSet;
+import jakarta.annotation.Nullable;
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Result of the image preparation of a single migration set by {@link PostgreSQLTestContainerTool#prepareAll}.
+ *
+ * @author Sergey Chernov
+ */
+public final class ImagePreparationReport {
+
+    public enum Outcome {
+        /**
+         * The image already existed.
+         */
+        FOUND,
+        /**
+         * The image was built by a concurrent process while waiting for the build lock.
+         */
+        BUILT_CONCURRENTLY,
+        /**
+         * The image was pulled from the registry.
+         */
+        PULLED,
+        /**
+         * The image was built.
+         */
+        BUILT,
+        /**
+         * The image could not be resolved, see {@link #getFailure()}.
+         */
+        FAILED;
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ROOT).replace('_', ' ');
+        }
+    }
+
+    private final FlywayMigrationSet flywayMigrationSet;
+    @Nullable
+    private final String imageName;
+    private final Outcome outcome;
+    private final Duration duration;
+    @Nullable
+    private final Throwable failure;
+
+    ImagePreparationReport(
+            FlywayMigrationSet flywayMigrationSet,
+            @Nullable String imageName,
+            Outcome outcome,
+            Duration duration,
+            @Nullable Throwable failure
+    ) {
+        this.flywayMigrationSet = flywayMigrationSet;
+        this.imageName = imageName;
+        this.outcome = outcome;
+        this.duration = duration;
+        this.failure = failure;
+    }
+
+    public FlywayMigrationSet getFlywayMigrationSet() {
+        return flywayMigrationSet;
+    }
+
+    /**
+     * Image name with tag (the base image name for PGDATA snapshots), null if the preparation failed before the tag
+     * was resolved.
+     */
+    @Nullable
+    public String getImageName() {
+        return imageName;
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Time of the image lookup and the build (or pull), excluding the time waiting for a free build slot.
+     */
+    public Duration getDuration() {
+        return duration;
+    }
+
+    @Nullable
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return "ImagePreparationReport{" +
+            "imageName='" + imageName + '\'' +
+            ", outcome=" + outcome +
+            ", duration=" + duration +
+            ", failure=" + failure +
+            '}';
+    }
+}
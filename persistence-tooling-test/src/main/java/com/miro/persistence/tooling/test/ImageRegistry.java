@@ -0,0 +1,165 @@
+package com.miro.persistence.tooling.test;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.command.PullImageResultCallback;
+import com.github.dockerjava.api.model.PushResponseItem;
+import com.miro.persistence.tooling.core.BuildPhase;
+import com.miro.persistence.tooling.core.BuildPhaseListener;
+import com.miro.persistence.tooling.core.BuildPhaseTimer;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.utility.DockerImageName;
+
+/**
+ * Pulls and pushes the migration images, the registry is defined by the image name prefix (see
+ * {@link PostgreSQLTestContainerTool#resolveImageName}). Registry failures are logged and never fail the build: a
+ * failed pull falls back to the local build, a failed push leaves the image local only. Registry credentials are
+ * resolved by testcontainers (docker config and credential helpers).
+ * <p>
+ * Pushes are executed in background, the pending pushes are awaited on JVM shutdown for at most
+ * {@link #SHUTDOWN_PUSH_TIMEOUT}.
+ *
+ * @author Sergey Chernov
+ */
+final class ImageRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImageRegistry.class);
+
+    private static final Duration PULL_TIMEOUT = Duration.ofMinutes(10);
+    private static final Duration PUSH_TIMEOUT = Duration.ofMinutes(10);
+    static final Duration SHUTDOWN_PUSH_TIMEOUT = Duration.ofMinutes(2);
+
+    private static final ExecutorService PUSH_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "persistence-tooling-image-push");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Set<CompletableFuture<Void>> PENDING_PUSHES = ConcurrentHashMap.newKeySet();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> awaitPushes(SHUTDOWN_PUSH_TIMEOUT),
+                "persistence-tooling-image-push-shutdown"));
+    }
+
+    /**
+     * @return true if the image was pulled
+     */
+    @SuppressWarnings("resource")
+    static boolean pull(String imageNameWithTag, BuildPhaseListener buildPhaseListener) {
+        DockerImageName dockerImageName = DockerImageName.parse(imageNameWithTag);
+        try (BuildPhaseTimer timer = BuildPhaseTimer.start(buildPhaseListener, BuildPhase.REGISTRY_PULL,
+                imageNameWithTag)) {
+            boolean pulled = false;
+            try {
+                DockerClient dockerClient = DockerClientFactory.instance().client();
+                pulled = dockerClient.pullImageCmd(dockerImageName.getUnversionedPart())
+                        .withTag(dockerImageName.getVersionPart())
+                        .exec(new PullImageResultCallback())
+                        .awaitCompletion(PULL_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+                if (pulled) {
+                    LOGGER.info("Image [{}] pulled from registry", imageNameWithTag);
+                } else {
+                    LOGGER.warn("Image [{}] pull timed out in {}, building locally", imageNameWithTag, PULL_TIMEOUT);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while pulling image " + imageNameWithTag, e);
+            } catch (RuntimeException e) {
+                // e.g. the tag is not pushed yet or the registry is unavailable
+                LOGGER.info("Image [{}] is not pulled from registry, building locally: {}", imageNameWithTag,
+                        e.toString());
+            }
+            timer.cacheHit(pulled).succeeded();
+            return pulled;
+        }
+    }
+
+    /**
+     * Schedules the push of the image, the returned future completes when the push is finished (successfully or not).
+     */
+    static CompletableFuture<Void> pushAsync(String imageName, String tag, BuildPhaseListener buildPhaseListener) {
+        CompletableFuture<Void> future = CompletableFuture.runAsync(() -> push(imageName, tag, buildPhaseListener),
+                PUSH_EXECUTOR);
+        PENDING_PUSHES.add(future);
+        future.whenComplete((result, e) -> PENDING_PUSHES.remove(future));
+        return future;
+    }
+
+    @SuppressWarnings("resource")
+    private static void push(String imageName, String tag, BuildPhaseListener buildPhaseListener) {
+        String imageNameWithTag = imageName + ":" + tag;
+        try (BuildPhaseTimer timer = BuildPhaseTimer.start(buildPhaseListener, BuildPhase.REGISTRY_PUSH,
+                imageNameWithTag)) {
+            PushCallback callback = DockerClientFactory.instance().client()
+                    .pushImageCmd(imageName)
+                    .withTag(tag)
+                    .exec(new PushCallback());
+            if (!callback.awaitCompletion(PUSH_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("Image [{}] push timed out in {}", imageNameWithTag, PUSH_TIMEOUT);
+                return;
+            }
+            if (callback.error != null) {
+                LOGGER.warn("Image [{}] push failed: {}", imageNameWithTag, callback.error);
+                return;
+            }
+            LOGGER.info("Image [{}] pushed to registry", imageNameWithTag);
+            timer.succeeded();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Interrupted while pushing image [{}]", imageNameWithTag);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Image [{}] push failed", imageNameWithTag, e);
+        }
+    }
+
+    /**
+     * @return true if all pending pushes are finished in time
+     */
+    static boolean awaitPushes(Duration timeout) {
+        CompletableFuture<?>[] pushes = PENDING_PUSHES.toArray(new CompletableFuture<?>[0]);
+        if (pushes.length == 0) {
+            return true;
+        }
+        LOGGER.info("Waiting for {} pending image push(es)", pushes.length);
+        try {
+            CompletableFuture.allOf(pushes).get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The push errors are reported as response items, not as exceptions.
+     */
+    private static class PushCallback extends ResultCallback.Adapter<PushResponseItem> {
+
+        private volatile String error;
+
+        @Override
+        public void onNext(PushResponseItem item) {
+            if (item.isErrorIndicated()) {
+                // the deprecated error field duplicates the error detail message
+                error = item.getErrorDetail() != null ? item.getErrorDetail().getMessage() : item.toString();
+            }
+        }
+    }
+
+    private ImageRegistry() {
+    }
+}
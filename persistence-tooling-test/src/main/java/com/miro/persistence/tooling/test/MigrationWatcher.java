@@ -0,0 +1,243 @@
+package com.miro.persistence.tooling.test;
+
+import com.miro.persistence.tooling.core.FlywayMigrationSet;
+import com.miro.persistence.tooling.core.SchemaMigrations;
+import com.miro.persistence.tooling.core.SeedData;
+import jakarta.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Watch mode for the local development: the {@code filesystem:} locations of the migration set (the migrations, the
+ * schema migrations and the seed data) are watched, the image of the changed files is built in background, so the
+ * next test run finds it already built.
+ * <ul>
+ *     <li>file changes are debounced, then the tag is recomputed (only the changed files are re-read thanks to the
+ *     per-file digest cache)</li>
+ *     <li>the build runs on a single background worker, a build of an outdated tag is cancelled when the files
+ *     change again</li>
+ * </ul>
+ * Classpath locations are not watched.
+ * <p>
+ * Usage, e.g. from a {@code main} method running next to the IDE:
+ * <pre>{@code
+ * try (MigrationWatcher watcher = new PostgreSQLTestContainerTool().watch(FLYWAY_MIGRATION_SET,
+ *         Duration.ofMillis(500))) {
+ *     Thread.currentThread().join();
+ * }
+ * }</pre>
+ *
+ * @author Sergey Chernov
+ */
+public final class MigrationWatcher implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MigrationWatcher.class);
+
+    private static final String FILESYSTEM_PREFIX = "filesystem:";
+
+    private final PostgreSQLTestContainerTool tool;
+    private final FlywayMigrationSet flywayMigrationSet;
+    private final String baseImageName;
+    private final Duration debounce;
+    private final WatchService watchService;
+    private final Thread watchThread;
+    private final ScheduledExecutorService debounceExecutor;
+    private final ExecutorService buildExecutor;
+
+    @Nullable
+    private ScheduledFuture<?> pendingRebuild;
+    @Nullable
+    private Build currentBuild;
+    private boolean closed;
+
+    private MigrationWatcher(
+            PostgreSQLTestContainerTool tool,
+            FlywayMigrationSet flywayMigrationSet,
+            Duration debounce,
+            WatchService watchService
+    ) {
+        this.tool = tool;
+        this.flywayMigrationSet = flywayMigrationSet;
+        this.baseImageName = tool.getBaseImageName(flywayMigrationSet);
+        this.debounce = debounce;
+        this.watchService = watchService;
+        this.watchThread = new Thread(this::watch, "migration-watcher");
+        this.watchThread.setDaemon(true);
+        this.debounceExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "migration-watcher-debounce");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.buildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "migration-watcher-build");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    static MigrationWatcher start(
+            PostgreSQLTestContainerTool tool,
+            FlywayMigrationSet flywayMigrationSet,
+            Duration debounce
+    ) {
+        Set<Path> directories = getWatchedDirectories(flywayMigrationSet);
+        Assert.state(!directories.isEmpty(), "No filesystem: locations to watch in " + flywayMigrationSet);
+        MigrationWatcher watcher;
+        try {
+            WatchService watchService = FileSystems.getDefault().newWatchService();
+            for (Path directory : directories) {
+                directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            }
+            watcher = new MigrationWatcher(tool, flywayMigrationSet, debounce, watchService);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to watch " + directories, e);
+        }
+        LOGGER.info("Watching {} for changes of the migrations", directories);
+        watcher.watchThread.start();
+        // the image of the current state is built right away
+        watcher.scheduleRebuild(Duration.ZERO);
+        return watcher;
+    }
+
+    private static Set<Path> getWatchedDirectories(FlywayMigrationSet flywayMigrationSet) {
+        Set<Path> directories = new LinkedHashSet<>();
+        addDirectory(directories, flywayMigrationSet.getMigrationResourcesPath());
+        for (SchemaMigrations schemaMigrations : flywayMigrationSet.getSchemaMigrations()) {
+            addDirectory(directories, schemaMigrations.getMigrationResourcesPath());
+        }
+        for (SeedData seedData : flywayMigrationSet.getSeedData()) {
+            if (seedData.getPath().startsWith(FILESYSTEM_PREFIX)) {
+                directories.add(Paths.get(seedData.getPath().substring(FILESYSTEM_PREFIX.length()))
+                        .toAbsolutePath().getParent());
+            }
+        }
+        return directories;
+    }
+
+    private static void addDirectory(Set<Path> directories, String location) {
+        if (location.startsWith(FILESYSTEM_PREFIX)) {
+            directories.add(Paths.get(location.substring(FILESYSTEM_PREFIX.length())).toAbsolutePath());
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = !key.pollEvents().isEmpty();
+                key.reset();
+                if (changed) {
+                    scheduleRebuild(debounce);
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // closed
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void scheduleRebuild(Duration delay) {
+        if (closed) {
+            return;
+        }
+        if (pendingRebuild != null) {
+            pendingRebuild.cancel(false);
+        }
+        pendingRebuild = debounceExecutor.schedule(this::rebuild, delay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void rebuild() {
+        if (closed) {
+            return;
+        }
+        String tag;
+        try {
+            tag = tool.resolveImageTag(baseImageName, flywayMigrationSet);
+        } catch (RuntimeException e) {
+            // e.g. a file in the middle of saving, the next change triggers another attempt
+            LOGGER.warn("Failed to calculate the tag of the changed migrations", e);
+            return;
+        }
+        if (currentBuild != null && currentBuild.tag.equals(tag) && !currentBuild.failed
+                && !currentBuild.future.isCancelled()) {
+            return;
+        }
+        if (currentBuild != null && !currentBuild.future.isDone()) {
+            LOGGER.info("Cancelling the build of the superseded tag {}", currentBuild.tag);
+            currentBuild.future.cancel(true);
+        }
+        Build build = new Build(tag);
+        build.future = buildExecutor.submit(() -> build(build));
+        currentBuild = build;
+    }
+
+    private void build(Build build) {
+        if (Thread.currentThread().isInterrupted()) {
+            return;
+        }
+        try {
+            String image = tool.prebuildImage(flywayMigrationSet);
+            LOGGER.info("Image [{}] is ready", image);
+        } catch (CancellationException e) {
+            LOGGER.info("Build of the tag {} is cancelled", build.tag);
+        } catch (RuntimeException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                // the cancellation interrupted docker or the build lock
+                LOGGER.info("Build of the tag {} is cancelled", build.tag);
+            } else {
+                build.failed = true;
+                LOGGER.warn("Build of the tag {} failed", build.tag, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            if (currentBuild != null) {
+                currentBuild.future.cancel(true);
+            }
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close the watch service", e);
+        }
+        debounceExecutor.shutdownNow();
+        buildExecutor.shutdownNow();
+    }
+
+    private static final class Build {
+
+        private final String tag;
+        private Future<?> future;
+        private volatile boolean failed;
+
+        private Build(String tag) {
+            this.tag = tag;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.miro.persistence.tooling.test;
+
+import com.miro.persistence.tooling.core.BuildPhase;
+import com.miro.persistence.tooling.core.BuildPhaseListener;
+import com.miro.persistence.tooling.core.BuildPhaseTimer;
+import com.miro.persistence.tooling.core.NativePostgresBinaries;
+import com.miro.persistence.tooling.core.PersistenceImageLabels;
+import com.miro.persistence.tooling.core.PgDataDirectories;
+import com.miro.persistence.tooling.core.PostgresRuntimeMode;
+import jakarta.annotation.Nullable;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Postgres of the locally installed binaries started from a copy of the migrated PGDATA directory, returned by
+ * {@link PostgreSQLTestContainerTool#startNativePostgreSQL}. The copy is removed on {@link #close()}, the instances
+ * which are not closed are stopped on JVM shutdown.
+ *
+ * @author Sergey Chernov
+ */
+public final class NativePostgreSQLInstance implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NativePostgreSQLInstance.class);
+
+    private static final Set<NativePostgreSQLInstance> RUNNING_INSTANCES = ConcurrentHashMap.newKeySet();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(
+                () -> RUNNING_INSTANCES.forEach(NativePostgreSQLInstance::close),
+                "persistence-tooling-native-postgres-shutdown"));
+    }
+
+    private final NativePostgresBinaries binaries;
+    private final Path directory;
+    private final Path workDir;
+    private final Path dataDir;
+    private final int port;
+    private final String databaseName;
+    private final String username;
+    private final String password;
+
+    private NativePostgreSQLInstance(
+            NativePostgresBinaries binaries,
+            Path directory,
+            Path workDir,
+            int port,
+            String databaseName,
+            String username,
+            String password
+    ) {
+        this.binaries = binaries;
+        this.directory = directory;
+        this.workDir = workDir;
+        this.dataDir = workDir.resolve("pgdata");
+        this.port = port;
+        this.databaseName = databaseName;
+        this.username = username;
+        this.password = password;
+    }
+
+    /**
+     * Copies the cached PGDATA directory and starts postgres on it.
+     */
+    static NativePostgreSQLInstance start(
+            NativePostgresBinaries binaries,
+            Path directory,
+            PostgresRuntimeMode runtimeMode,
+            String databaseName,
+            String username,
+            String password,
+            BuildPhaseListener buildPhaseListener
+    ) {
+        NativePostgreSQLInstance instance = new NativePostgreSQLInstance(binaries, directory,
+                PgDataDirectories.createWorkDirectory("runtime"), NativePostgresBinaries.findFreePort(),
+                databaseName, username, password);
+        try (BuildPhaseTimer timer = BuildPhaseTimer.start(buildPhaseListener, BuildPhase.RUNTIME_START,
+                directory.toString())) {
+            RUNNING_INSTANCES.add(instance);
+            try {
+                PgDataDirectories.copy(directory, instance.dataDir);
+                binaries.start(instance.dataDir, instance.port, getRuntimeSettings(runtimeMode));
+            } catch (RuntimeException e) {
+                instance.close();
+                throw e;
+            }
+            timer.succeeded();
+        }
+        LOGGER.debug("Native postgres started on port {} from {}", instance.port, directory);
+        return instance;
+    }
+
+    /**
+     * The copy is thrown away, so durability is not needed in the non-durable mode.
+     */
+    private static Map<String, String> getRuntimeSettings(PostgresRuntimeMode runtimeMode) {
+        if (runtimeMode != PostgresRuntimeMode.TMPFS) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> settings = new LinkedHashMap<>();
+        settings.put("fsync", "off");
+        settings.put("synchronous_commit", "off");
+        settings.put("full_page_writes", "off");
+        return settings;
+    }
+
+    public String getJdbcUrl() {
+        return NativePostgresBinaries.getJdbcUrl(port, databaseName);
+    }
+
+    public String getDatabaseName() {
+        return databaseName;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    /**
+     * Fingerprint of the schema saved with the PGDATA directory, see {@link
+     * com.miro.persistence.tooling.core.SchemaFingerprint}.
+     */
+    @Nullable
+    public String getExpectedSchemaFingerprint() {
+        return PgDataDirectories.readMetadata(directory).get(PersistenceImageLabels.SCHEMA_FINGERPRINT);
+    }
+
+    /**
+     * Stops postgres immediately and removes the copy of PGDATA.
+     */
+    @Override
+    public void close() {
+        if (!RUNNING_INSTANCES.remove(this)) {
+            return;
+        }
+        try {
+            if (binaries.isRunning(dataDir)) {
+                binaries.stop(dataDir, false);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to stop native postgres on port {}", port, e);
+        } finally {
+            PgDataDirectories.delete(workDir);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.miro.persistence.tooling.test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Pool of pre-started PostgreSQL containers of the same migration image. The pool keeps {@code size} containers
+ * starting or ready in background, each {@link #lease()} takes the oldest one and schedules a replacement. Leased
+ * containers are never returned to the pool: {@link #release(PostgreSQLContainer)} discards the container.
+ * <p>
+ * Usage in Spring test configuration:
+ * <pre>{@code
+ * private static final PostgreSQLContainerPool POOL = new PostgreSQLTestContainerTool()
+ *         .createPostgreSQLContainerPool(FLYWAY_MIGRATION_SET, 2);
+ *
+ * @Bean
+ * public PostgreSQLContainer<?> postgreSQLContainer() {
+ *     return POOL.lease();
+ * }
+ * }</pre>
+ *
+ * @author Sergey Chernov
+ * @see PostgreSQLTestContainerTool#createPostgreSQLContainerPool
+ */
+public class PostgreSQLContainerPool implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PostgreSQLContainerPool.class);
+
+    private final String imageName;
+    private final Supplier<PostgreSQLContainer<?>> containerFactory;
+    private final ExecutorService executor;
+    private final Deque<CompletableFuture<PostgreSQLContainer<?>>> containers = new ArrayDeque<>();
+
+    private boolean closed;
+
+    PostgreSQLContainerPool(String imageName, Supplier<PostgreSQLContainer<?>> containerFactory, int size) {
+        Assert.isTrue(size > 0, "Pool size should be positive");
+        this.imageName = imageName;
+        this.containerFactory = containerFactory;
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(size, runnable -> {
+            Thread thread = new Thread(runnable, "postgres-pool-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        synchronized (this) {
+            for (int i = 0; i < size; i++) {
+                containers.addLast(startContainer());
+            }
+        }
+    }
+
+    /**
+     * Takes a started container from the pool, waits if the container is still starting. The caller owns the
+     * container and should {@link #release(PostgreSQLContainer) release} it when it's not needed anymore.
+     */
+    public PostgreSQLContainer<?> lease() {
+        CompletableFuture<PostgreSQLContainer<?>> container;
+        synchronized (this) {
+            Assert.state(!closed, "Pool is closed");
+            container = containers.pollFirst();
+            containers.addLast(startContainer());
+        }
+        try {
+            return container.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Failed to start container of image " + imageName, e.getCause());
+        }
+    }
+
+    /**
+     * Discards the leased container.
+     */
+    public void release(PostgreSQLContainer<?> container) {
+        stopQuietly(container);
+    }
+
+    /**
+     * Stops all not leased containers, including the ones still starting.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        executor.shutdown();
+        containers.forEach(container -> container.thenAccept(PostgreSQLContainerPool::stopQuietly));
+        containers.clear();
+    }
+
+    private CompletableFuture<PostgreSQLContainer<?>> startContainer() {
+        return CompletableFuture.supplyAsync(() -> {
+            PostgreSQLContainer<?> container = containerFactory.get();
+            container.start();
+            LOGGER.info("Pooled container {} of image {} is ready", container.getContainerId(), imageName);
+            return container;
+        }, executor);
+    }
+
+    private static void stopQuietly(PostgreSQLContainer<?> container) {
+        try {
+            container.stop();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to stop container {}", container.getContainerId(), e);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.miro.persistence.tooling.test;
+
+/**
+ * Connection settings of a database served by a PostgreSQL container.
+ *
+ * @author Sergey Chernov
+ * @see PostgreSQLTemplateDatabasePool
+ */
+public final class PostgreSQLDatabase {
+
+    private final String databaseName;
+    private final String jdbcUrl;
+    private final String username;
+    private final String password;
+
+    PostgreSQLDatabase(String databaseName, String jdbcUrl, String username, String password) {
+        this.databaseName = databaseName;
+        this.jdbcUrl = jdbcUrl;
+        this.username = username;
+        this.password = password;
+    }
+
+    public String getDatabaseName() {
+        return databaseName;
+    }
+
+    public String getJdbcUrl() {
+        return jdbcUrl;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public String toString() {
+        return "PostgreSQLDatabase{" +
+                "databaseName='" + databaseName + '\'' +
+                ", jdbcUrl='" + jdbcUrl + '\'' +
+                ", username='" + username + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,195 @@
+package com.miro.persistence.tooling.test;
+
+import static com.miro.persistence.tooling.test.ContainerDatabases.quote;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Serves isolated databases cloned from the migrated database of a single running container. The migrated database is
+ * marked as a template (connections to it are not allowed anymore), each {@link #acquire()} returns a database created
+ * via {@code CREATE DATABASE ... TEMPLATE} with its own role. Clones are created ahead of time in background,
+ * released clones are dropped asynchronously. The clone names contain a random id of the pool, so several pools
+ * (e.g. of several JVMs sharing a reused container) don't collide.
+ * <p>
+ * Usage:
+ * <pre>{@code
+ * PostgreSQLContainer<?> container = new PostgreSQLTestContainerTool()
+ *         .createPostgreSQLContainer(FLYWAY_MIGRATION_SET);
+ * container.start();
+ * PostgreSQLTemplateDatabasePool pool = PostgreSQLTemplateDatabasePool.create(container, 4);
+ * PostgreSQLDatabase database = pool.acquire();
+ * // ... use database.getJdbcUrl(), database.getUsername(), database.getPassword()
+ * pool.release(database);
+ * }</pre>
+ *
+ * @author Sergey Chernov
+ */
+public class PostgreSQLTemplateDatabasePool implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PostgreSQLTemplateDatabasePool.class);
+
+    private final PostgreSQLContainer<?> container;
+    private final String templateDatabase;
+    private final int prefetch;
+    private final int serverVersion;
+    private final String cloneNamePrefix;
+    private final ExecutorService executor;
+    private final AtomicInteger cloneCounter = new AtomicInteger();
+    private final Deque<CompletableFuture<PostgreSQLDatabase>> clones = new ArrayDeque<>();
+
+    private boolean closed;
+
+    private PostgreSQLTemplateDatabasePool(PostgreSQLContainer<?> container, int prefetch, int serverVersion) {
+        this.container = container;
+        this.templateDatabase = container.getDatabaseName();
+        this.prefetch = prefetch;
+        this.serverVersion = serverVersion;
+        this.cloneNamePrefix = templateDatabase + "_clone_" + UUID.randomUUID().toString().substring(0, 8) + "_";
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(2, prefetch), runnable -> {
+            Thread thread = new Thread(runnable, "postgres-template-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Marks the database of the started container as a template and starts cloning {@code prefetch} databases in
+     * background.
+     *
+     * @param container started container, e.g. created by {@link PostgreSQLTestContainerTool}
+     * @param prefetch  number of clones to keep ready
+     */
+    public static PostgreSQLTemplateDatabasePool create(PostgreSQLContainer<?> container, int prefetch) {
+        Assert.state(container.isRunning(), "Container is not running");
+        Assert.isTrue(prefetch >= 0, "prefetch should not be negative");
+
+        int serverVersion;
+        String templateDatabase = quote(container.getDatabaseName());
+        try (Connection connection = connect(container);
+             Statement statement = connection.createStatement()) {
+            statement.execute("ALTER DATABASE " + templateDatabase + " WITH IS_TEMPLATE true ALLOW_CONNECTIONS false");
+            // CREATE DATABASE fails if there are other sessions connected to the template
+            statement.execute("SELECT pg_terminate_backend(pid) FROM pg_stat_activity "
+                    + "WHERE datname = '" + container.getDatabaseName() + "' AND pid <> pg_backend_pid()");
+            serverVersion = ContainerDatabases.getServerVersion(statement);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to mark database " + templateDatabase + " as template", e);
+        }
+
+        PostgreSQLTemplateDatabasePool pool = new PostgreSQLTemplateDatabasePool(container, prefetch, serverVersion);
+        synchronized (pool) {
+            for (int i = 0; i < prefetch; i++) {
+                pool.clones.addLast(pool.cloneAsync());
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Returns a fresh database cloned from the template, waits if no prefetched clone is ready yet.
+     */
+    public PostgreSQLDatabase acquire() {
+        CompletableFuture<PostgreSQLDatabase> clone;
+        synchronized (this) {
+            Assert.state(!closed, "Pool is closed");
+            clone = prefetch == 0 ? cloneAsync() : clones.pollFirst();
+            if (prefetch > 0) {
+                clones.addLast(cloneAsync());
+            }
+        }
+        try {
+            return clone.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Failed to clone database " + templateDatabase, e.getCause());
+        }
+    }
+
+    /**
+     * Drops the database and its role asynchronously, or synchronously if the pool is already closed.
+     */
+    public void release(PostgreSQLDatabase database) {
+        synchronized (this) {
+            if (!closed) {
+                // submitted under the lock, so the executor is not shut down yet
+                CompletableFuture.runAsync(() -> drop(database), executor);
+                return;
+            }
+        }
+        drop(database);
+    }
+
+    /**
+     * Drops prefetched clones and waits for the pending drops. Databases acquired and not released stay as is.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            clones.forEach(clone -> clone.thenAccept(this::drop));
+            clones.clear();
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOGGER.warn("Timeout while dropping cloned databases of {}", templateDatabase);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private CompletableFuture<PostgreSQLDatabase> cloneAsync() {
+        return CompletableFuture.supplyAsync(this::createClone, executor);
+    }
+
+    private PostgreSQLDatabase createClone() {
+        String name = cloneNamePrefix + cloneCounter.incrementAndGet();
+        String password = UUID.randomUUID().toString();
+        try (Connection connection = connect(container);
+             Statement statement = connection.createStatement()) {
+            // membership in the template owner role grants privileges on all cloned objects
+            statement.execute("CREATE ROLE " + quote(name) + " LOGIN PASSWORD '" + password + "' "
+                    + "IN ROLE " + quote(container.getUsername()));
+            statement.execute("CREATE DATABASE " + quote(name) + " TEMPLATE " + quote(templateDatabase)
+                    + " OWNER " + quote(name)
+                    + ContainerDatabases.getCloneStrategyClause(serverVersion));
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to clone database " + templateDatabase + " to " + name, e);
+        }
+        LOGGER.debug("Database {} cloned from {}", name, templateDatabase);
+        return new PostgreSQLDatabase(name, ContainerDatabases.getJdbcUrl(container, name), name, password);
+    }
+
+    private void drop(PostgreSQLDatabase database) {
+        try (Connection connection = connect(container);
+             Statement statement = connection.createStatement()) {
+            ContainerDatabases.dropDatabase(statement, database.getDatabaseName(), serverVersion);
+            statement.execute("DROP ROLE IF EXISTS " + quote(database.getUsername()));
+        } catch (SQLException e) {
+            LOGGER.warn("Failed to drop cloned database {}", database.getDatabaseName(), e);
+        }
+    }
+
+    private static Connection connect(PostgreSQLContainer<?> container) throws SQLException {
+        return ContainerDatabases.connect(container, ContainerDatabases.MAINTENANCE_DATABASE);
+    }
+}
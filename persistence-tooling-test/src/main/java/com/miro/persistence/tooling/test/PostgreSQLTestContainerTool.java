@@ -5,17 +5,58 @@ import static java.time.temporal.ChronoUnit.MINUTES;
 import com.github.dockerjava.api.command.InspectImageResponse;
 import com.github.dockerjava.api.exception.NotFoundException;
 import com.github.dockerjava.api.model.ContainerConfig;
+import com.github.dockerjava.api.model.Image;
+import com.miro.persistence.tooling.core.BuildPhase;
+import com.miro.persistence.tooling.core.BuildPhaseListener;
+import com.miro.persistence.tooling.core.BuildPhaseTimer;
+import com.miro.persistence.tooling.core.FlywayChecksum;
 import com.miro.persistence.tooling.core.FlywayChecksumUtils;
 import com.miro.persistence.tooling.core.FlywayMigrationSet;
+import com.miro.persistence.tooling.core.ImageAccessLog;
+import com.miro.persistence.tooling.core.ImageGarbageCollector;
+import com.miro.persistence.tooling.core.ImageRetentionPolicy;
 import com.miro.persistence.tooling.core.InitScript;
+import com.miro.persistence.tooling.core.MigrationCatalog;
+import com.miro.persistence.tooling.core.MigrationCatalogResourceProvider;
+import com.miro.persistence.tooling.core.NativePostgresBinaries;
+import com.miro.persistence.tooling.core.NativePostgresExecutable;
 import com.miro.persistence.tooling.core.PersistenceClasspathResources;
+import com.miro.persistence.tooling.core.PersistenceImageLabels;
+import com.miro.persistence.tooling.core.PgDataDirectories;
+import com.miro.persistence.tooling.core.PgDataSnapshots;
 import com.miro.persistence.tooling.core.PostgresContainerAdapter;
 import com.miro.persistence.tooling.core.PostgresExecutable;
+import com.miro.persistence.tooling.core.PostgresRuntimeMode;
+import com.miro.persistence.tooling.core.PostgresStateBackend;
+import com.miro.persistence.tooling.core.SchemaFingerprint;
+import com.miro.persistence.tooling.core.SchemaMigrations;
 import jakarta.annotation.Nullable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.callback.Callback;
 import org.flywaydb.core.api.configuration.FluentConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,74 +84,681 @@ public class PostgreSQLTestContainerTool {
     private static final String DB_PASSWORD = "password";
     private static final String DB_NAME = "database";
 
-    @SuppressWarnings("resource")
+    /**
+     * Max number of layers of an ancestor image, docker fails to create containers of images having more than ~125
+     * layers
+     */
+    private static final int MAX_ANCESTOR_LAYERS = 100;
+
+    /**
+     * Enables the pull of the missing image from the registry before the local build, see
+     * {@link #isRegistryPullEnabled(FlywayMigrationSet)}
+     */
+    public static final String REGISTRY_PULL_PROPERTY = "persistence-tooling.registry.pull";
+
+    /**
+     * Enables the background push of the built image to the registry, see
+     * {@link #isRegistryPushEnabled(FlywayMigrationSet)}
+     */
+    public static final String REGISTRY_PUSH_PROPERTY = "persistence-tooling.registry.push";
+
+    /**
+     * Enables the reuse of a long-lived container across JVM runs, see
+     * {@link #isContainerReuseEnabled(FlywayMigrationSet)}
+     */
+    public static final String CONTAINER_REUSE_PROPERTY = "persistence-tooling.container-reuse";
+
+    /**
+     * JVM-wide cache of the resolved images, shared by all tool instances (e.g. cached spring contexts)
+     */
+    private static final ConcurrentMap<ImageKey, CompletableFuture<ImageResult>> RESOLVED_IMAGES =
+            new ConcurrentHashMap<>();
+
+    private static final ImageBuildLockProvider DEFAULT_IMAGE_BUILD_LOCK_PROVIDER =
+            FileImageBuildLockProvider.createDefault();
+
+    /**
+     * Resolves the image (building it on demand) and creates the container, which is not started yet.
+     */
     public PostgreSQLContainer<?> createPostgreSQLContainer(FlywayMigrationSet flywayMigrationSet) {
-        ImageResult imageResult = getOrCreateImage(flywayMigrationSet);
-        ContainerConfig config = imageResult.config;
-        Assert.state(config != null, "Can't determine connection settings because the image's config is null");
-        String[] envVars = config.getEnv();
-        Assert.state(envVars != null,
-                "Can't determine connection settings because the image's environment variables are null");
-
-        String database = null;
-        String user = null;
-        String password = null;
-        for (String var : envVars) {
-            if (var.startsWith("POSTGRES_DB=")) {
-                database = var.substring("POSTGRES_DB=".length());
-            }
-            if (var.startsWith("POSTGRES_USER=")) {
-                user = var.substring("POSTGRES_USER=".length());
-            }
-            if (var.startsWith("POSTGRES_PASSWORD=")) {
-                password = var.substring("POSTGRES_PASSWORD=".length());
-            }
-        }
-        Assert.state(database != null, "Can't determine database name. Env variable 'POSTGRES_DB' not found inside "
-                + "the image");
-        Assert.state(user != null, "Can't determine user. Env variable 'POSTGRES_USER' not found inside the image");
-        Assert.state(password != null, "Can't determine password. Env variable 'POSTGRES_PASSWORD' not found inside "
-                + "the image");
-
-        return new PostgreSQLContainer<>(imageResult.dockerImageName.asCompatibleSubstituteFor("postgres"))
-                .withDatabaseName(database)
-                .withUsername(user)
-                .withPassword(password)
+        ImageResult imageResult = resolveImage(flywayMigrationSet);
+        return createPostgreSQLContainer(imageResult, getRuntimeMode(flywayMigrationSet), getBuildPhaseListener());
+    }
+
+    /**
+     * Resolves the image (building it on demand) and creates the container, which is not started yet. If
+     * {@link #isContainerReuseEnabled(FlywayMigrationSet) the container reuse} is enabled, the first container of the
+     * migration set in the JVM is reused across JVM runs: its database is reset on start, and its {@code stop()} does
+     * nothing, so the container is left running for the next run. Otherwise a regular container is returned.
+     */
+    public PostgreSQLContainer<?> createReusablePostgreSQLContainer(FlywayMigrationSet flywayMigrationSet) {
+        ImageResult imageResult = resolveImage(flywayMigrationSet);
+        RuntimePostgreSQLContainer container = createPostgreSQLContainer(imageResult,
+                getRuntimeMode(flywayMigrationSet), getBuildPhaseListener());
+        String imageName = resolveImageName(flywayMigrationSet);
+        if (isContainerReuseEnabled(flywayMigrationSet)
+                && ReusableContainers.tryLock(imageName, getImageBuildLockProvider())) {
+            container.enableReuse(imageName, imageResult.getTag());
+        }
+        return container;
+    }
+
+    /**
+     * Resolves the image (building it on demand), creates and starts the container in background on
+     * {@link #getAsyncExecutor() the default executor}, see {@link #createStartedPostgreSQLContainerAsync(
+     * FlywayMigrationSet, Executor)}.
+     */
+    public CompletableFuture<PostgreSQLContainer<?>> createStartedPostgreSQLContainerAsync(
+            FlywayMigrationSet flywayMigrationSet
+    ) {
+        return createStartedPostgreSQLContainerAsync(flywayMigrationSet, getAsyncExecutor());
+    }
+
+    /**
+     * Resolves the image (building it on demand), creates and starts the container on the executor. Allows to overlap
+     * the database bootstrap with the rest of the application context initialization and with other containers. The
+     * caller is responsible for stopping the container.
+     */
+    @SuppressWarnings("resource")
+    public CompletableFuture<PostgreSQLContainer<?>> createStartedPostgreSQLContainerAsync(
+            FlywayMigrationSet flywayMigrationSet,
+            Executor executor
+    ) {
+        return CompletableFuture.supplyAsync(() -> {
+            PostgreSQLContainer<?> container = createPostgreSQLContainer(flywayMigrationSet);
+            try {
+                container.start();
+            } catch (RuntimeException e) {
+                container.stop();
+                throw e;
+            }
+            return container;
+        }, executor);
+    }
+
+    /**
+     * Verifies the schema of the started container against the fingerprint saved in its image with a single query,
+     * a cheap replacement of Flyway and Hibernate schema validation, see {@link SchemaFingerprint}.
+     *
+     * @param container started container created by this tool
+     * @throws IllegalStateException if the schema doesn't match or the image has no fingerprint
+     */
+    public static void verifySchemaFingerprint(PostgreSQLContainer<?> container) {
+        Assert.isInstanceOf(RuntimePostgreSQLContainer.class, container, "Container is not created by the tool");
+        String expectedFingerprint = ((RuntimePostgreSQLContainer) container).getExpectedSchemaFingerprint();
+        Assert.state(expectedFingerprint != null,
+                () -> "Image " + container.getDockerImageName() + " has no schema fingerprint, it should be rebuilt");
+        try (Connection connection = container.createConnection("")) {
+            SchemaFingerprint.verify(connection, expectedFingerprint);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to verify schema fingerprint of " + container.getJdbcUrl(), e);
+        }
+    }
+
+    /**
+     * Starts the watch mode: the {@code filesystem:} locations of the migration set are watched, the image of the
+     * changed migrations is built in background, see {@link MigrationWatcher}.
+     */
+    public MigrationWatcher watch(FlywayMigrationSet flywayMigrationSet, Duration debounce) {
+        return MigrationWatcher.start(this, flywayMigrationSet, debounce);
+    }
+
+    /**
+     * Finds or builds the image of the current migrations, bypassing the JVM-wide cache of the resolved images.
+     *
+     * @return image name with tag
+     */
+    String prebuildImage(FlywayMigrationSet flywayMigrationSet) {
+        return getOrCreateImage(flywayMigrationSet, getBaseImageName(flywayMigrationSet),
+                resolveImageName(flywayMigrationSet), null).dockerImageName.toString();
+    }
+
+    /**
+     * Prepares the images of the migration sets, e.g. in a CI warm-up step, see
+     * {@link #prepareAll(Collection, ImageBuildLimits)}.
+     */
+    public List<ImagePreparationReport> prepareAll(Collection<FlywayMigrationSet> flywayMigrationSets) {
+        return prepareAll(flywayMigrationSets, ImageBuildLimits.defaults());
+    }
+
+    /**
+     * Prepares the images of the migration sets at once: the tags are resolved and the existing images are looked up
+     * in parallel, the missing images are pulled or built concurrently within the limits. A failure of a set does not
+     * affect the other sets, it is reported.
+     *
+     * @return reports in the order of the migration sets
+     */
+    public List<ImagePreparationReport> prepareAll(
+            Collection<FlywayMigrationSet> flywayMigrationSets,
+            ImageBuildLimits limits
+    ) {
+        long startNanos = System.nanoTime();
+        ExecutorService lookupExecutor = newDaemonExecutor("image-lookup-",
+                Runtime.getRuntime().availableProcessors());
+        // the pool size is the cap of the concurrent build containers
+        ExecutorService buildExecutor = newDaemonExecutor("image-build-", limits.getMaxConcurrentBuilds());
+        try {
+            List<CompletableFuture<ImagePreparationReport>> futures = flywayMigrationSets.stream()
+                    .map(flywayMigrationSet -> CompletableFuture
+                            .supplyAsync(() -> findPreparedImage(flywayMigrationSet), lookupExecutor)
+                            .thenCompose(report -> report != null
+                                    ? CompletableFuture.completedFuture(report)
+                                    : CompletableFuture.supplyAsync(
+                                            () -> prepareImage(flywayMigrationSet, limits.getCpusPerBuild()),
+                                            buildExecutor)))
+                    .collect(Collectors.toList());
+            List<ImagePreparationReport> reports = futures.stream()
+                    .map(CompletableFuture::join)
+                    .collect(Collectors.toList());
+            LOGGER.info("Prepared {} images in {} ms: {}", reports.size(),
+                    (System.nanoTime() - startNanos) / 1_000_000,
+                    reports.stream().collect(Collectors.groupingBy(ImagePreparationReport::getOutcome,
+                            () -> new EnumMap<>(ImagePreparationReport.Outcome.class), Collectors.counting())));
+            return reports;
+        } finally {
+            lookupExecutor.shutdownNow();
+            buildExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return report of the existing image or of the failure, null if the image should be prepared
+     */
+    @Nullable
+    private ImagePreparationReport findPreparedImage(FlywayMigrationSet flywayMigrationSet) {
+        long startNanos = System.nanoTime();
+        String imageName = null;
+        try {
+            String baseImageName = getBaseImageName(flywayMigrationSet);
+            imageName = resolveImageName(flywayMigrationSet);
+            String imageTag = resolveImageTag(baseImageName, flywayMigrationSet);
+            ImageResult imageResult = findImageResult(flywayMigrationSet, baseImageName, imageName, imageTag,
+                    getBuildPhaseListener());
+            if (imageResult == null) {
+                return null;
+            }
+            return new ImagePreparationReport(flywayMigrationSet, imageResult.dockerImageName.toString(),
+                    ImagePreparationReport.Outcome.FOUND, Duration.ofNanos(System.nanoTime() - startNanos), null);
+        } catch (RuntimeException e) {
+            return failedPreparation(flywayMigrationSet, imageName, startNanos, e);
+        }
+    }
+
+    private ImagePreparationReport prepareImage(FlywayMigrationSet flywayMigrationSet, double buildCpus) {
+        long startNanos = System.nanoTime();
+        try {
+            ImageResult imageResult = resolveImage(flywayMigrationSet, buildCpus);
+            return new ImagePreparationReport(flywayMigrationSet, imageResult.dockerImageName.toString(),
+                    imageResult.outcome, Duration.ofNanos(System.nanoTime() - startNanos), null);
+        } catch (RuntimeException e) {
+            return failedPreparation(flywayMigrationSet, resolveImageName(flywayMigrationSet), startNanos, e);
+        }
+    }
+
+    private static ImagePreparationReport failedPreparation(
+            FlywayMigrationSet flywayMigrationSet,
+            @Nullable String imageName,
+            long startNanos,
+            RuntimeException e
+    ) {
+        LOGGER.warn("Failed to prepare image of {}", flywayMigrationSet, e);
+        return new ImagePreparationReport(flywayMigrationSet, imageName, ImagePreparationReport.Outcome.FAILED,
+                Duration.ofNanos(System.nanoTime() - startNanos), e);
+    }
+
+    private static ExecutorService newDaemonExecutor(String threadNamePrefix, int threads) {
+        AtomicInteger threadCounter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, threadNamePrefix + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts postgres of the locally installed binaries without docker, see {@link NativePostgresExecutable}. The
+     * migrated PGDATA directory is built on demand and cached by the checksum tag, the instance runs on a copy of it.
+     * The base image of the migration set is ignored, the version of the binaries is a part of the tag instead.
+     * The caller is responsible for closing the instance.
+     */
+    public NativePostgreSQLInstance startNativePostgreSQL(FlywayMigrationSet flywayMigrationSet) {
+        BuildPhaseListener buildPhaseListener = getBuildPhaseListener();
+        NativePostgresBinaries binaries = NativePostgresBinaries.locate();
+        NativePostgresExecutable postgres = NativePostgresExecutable.create(binaries)
+                .withBuildProfile(flywayMigrationSet.getBuildProfile())
+                .withBuildPhaseListener(buildPhaseListener);
+        String baseImageName = postgres.getBaseImageName();
+        String imageName = resolveImageName(flywayMigrationSet);
+        String imageTag;
+        try (BuildPhaseTimer timer = BuildPhaseTimer.start(buildPhaseListener, BuildPhase.CHECKSUM, imageName)) {
+            imageTag = resolveImageTag(baseImageName, flywayMigrationSet);
+            timer.succeeded();
+        }
+        String imageNameWithTag = imageName + ":" + imageTag;
+        Path directory = PgDataDirectories.getDirectory(imageName, imageTag);
+        if (!Files.isDirectory(directory)) {
+            ImageBuildLockProvider.Lock lock = acquireBuildLock(imageNameWithTag, buildPhaseListener);
+            try {
+                if (Files.isDirectory(directory)) {
+                    LOGGER.info("PGDATA [{}] was created by a concurrent process", imageNameWithTag);
+                } else {
+                    LOGGER.info("PGDATA [{}] does not exist, creating on demand", imageNameWithTag);
+                    FlywayChecksum checksum = FlywayChecksumUtils.calculate(baseImageName, flywayMigrationSet);
+                    String jdbcUrl = postgres.start(DB_NAME, DB_USER, DB_PASSWORD,
+                            getInitScripts(flywayMigrationSet.getInitScriptPaths()));
+                    try {
+                        migrate(flywayMigrationSet, imageNameWithTag, jdbcUrl, buildPhaseListener);
+                        postgres.saveState(imageName, imageTag, checksum.toImageLabels());
+                    } finally {
+                        postgres.stop();
+                    }
+                    // a new directory appeared, the old ones may be obsolete
+                    collectPgDataDirectories(flywayMigrationSet, imageName, imageTag);
+                }
+            } finally {
+                lock.close();
+            }
+        }
+        ImageAccessLog.recordAccess(imageName, imageTag);
+        return NativePostgreSQLInstance.start(binaries, directory, getRuntimeMode(flywayMigrationSet), DB_NAME,
+                DB_USER, DB_PASSWORD, buildPhaseListener);
+    }
+
+    /**
+     * Creates a pool of {@code size} containers which are started in background, see
+     * {@link PostgreSQLContainerPool}. The image is resolved (and created on demand) before this method returns.
+     */
+    public PostgreSQLContainerPool createPostgreSQLContainerPool(FlywayMigrationSet flywayMigrationSet, int size) {
+        ImageResult imageResult = resolveImage(flywayMigrationSet);
+        PostgresRuntimeMode runtimeMode = getRuntimeMode(flywayMigrationSet);
+        BuildPhaseListener buildPhaseListener = getBuildPhaseListener();
+        return new PostgreSQLContainerPool(imageResult.dockerImageName.toString(),
+                () -> createPostgreSQLContainer(imageResult, runtimeMode, buildPhaseListener), size);
+    }
+
+    @SuppressWarnings("resource")
+    private static RuntimePostgreSQLContainer createPostgreSQLContainer(
+            ImageResult imageResult,
+            PostgresRuntimeMode runtimeMode,
+            BuildPhaseListener buildPhaseListener
+    ) {
+        return new RuntimePostgreSQLContainer(imageResult.dockerImageName.asCompatibleSubstituteFor("postgres"),
+                imageResult.snapshotFile, runtimeMode, buildPhaseListener)
+                .withDatabaseName(imageResult.database)
+                .withUsername(imageResult.user)
+                .withPassword(imageResult.password)
                 .waitingFor(new LogMessageWaitStrategy()
                         .withRegEx(".*database system is ready to accept connections.*\\s")
                         .withStartupTimeout(Duration.of(1, MINUTES)));
     }
 
-    private ImageResult getOrCreateImage(FlywayMigrationSet flywayMigrationSet) {
+    /**
+     * Resolves the image once per JVM, concurrent callers of the same migration set wait for the single lookup (and
+     * build). Failed resolutions are not cached.
+     */
+    private ImageResult resolveImage(FlywayMigrationSet flywayMigrationSet) {
+        return resolveImage(flywayMigrationSet, null);
+    }
+
+    /**
+     * @param buildCpus CPU limit of the build container, unlimited if null
+     */
+    private ImageResult resolveImage(FlywayMigrationSet flywayMigrationSet, @Nullable Double buildCpus) {
         String baseImageName = getBaseImageName(flywayMigrationSet);
         String imageName = resolveImageName(flywayMigrationSet);
-        String imageTag = resolveImageTag(baseImageName, flywayMigrationSet);
+        ImageKey key = new ImageKey(flywayMigrationSet, baseImageName, imageName);
+
+        CompletableFuture<ImageResult> future = new CompletableFuture<>();
+        CompletableFuture<ImageResult> existingFuture = RESOLVED_IMAGES.putIfAbsent(key, future);
+        if (existingFuture != null) {
+            try {
+                return existingFuture.join();
+            } catch (CompletionException e) {
+                throw new IllegalStateException("Failed to resolve image for " + flywayMigrationSet, e.getCause());
+            }
+        }
+        try {
+            ImageResult imageResult = getOrCreateImage(flywayMigrationSet, baseImageName, imageName, buildCpus);
+            future.complete(imageResult);
+            return imageResult;
+        } catch (RuntimeException | Error e) {
+            RESOLVED_IMAGES.remove(key, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private ImageResult getOrCreateImage(
+            FlywayMigrationSet flywayMigrationSet,
+            String baseImageName,
+            String imageName,
+            @Nullable Double buildCpus
+    ) {
+        BuildPhaseRecorder recorder = new BuildPhaseRecorder(getBuildPhaseListener());
+        String imageTag;
+        try (BuildPhaseTimer timer = BuildPhaseTimer.start(recorder, BuildPhase.CHECKSUM, imageName)) {
+            imageTag = resolveImageTag(baseImageName, flywayMigrationSet);
+            timer.succeeded();
+        }
         String imageNameWithTag = imageName + ":" + imageTag;
 
-        InspectImageResponse image = findImage(imageNameWithTag);
-        if (image == null) {
-            LOGGER.info("Image [{}] does not exist, creating on demand", imageNameWithTag);
-            List<InitScript> initScripts = getInitScripts(flywayMigrationSet.getInitScriptPaths());
-            PostgresExecutable postgres =
-                    PostgresContainerAdapter.createPostgresContainerAdapterFromBaseImage(baseImageName);
-            String jdbcUrl = postgres.start(DB_NAME, DB_USER, DB_PASSWORD, initScripts);
+        ImagePreparationReport.Outcome outcome = ImagePreparationReport.Outcome.FOUND;
+        ImageResult imageResult = findImageResult(flywayMigrationSet, baseImageName, imageName, imageTag, recorder);
+        if (imageResult == null) {
+            // single-flight: one process builds the image, others wait and reuse it
+            ImageBuildLockProvider.Lock lock = acquireBuildLock(imageNameWithTag, recorder);
             try {
-                executeFlyway(flywayMigrationSet, jdbcUrl);
-                image = findImage(imageNameWithTag);
-                if (image == null) {
-                    postgres.saveState(imageName, imageTag);
-                    image = findImage(imageNameWithTag);
+                imageResult = findImageResult(flywayMigrationSet, baseImageName, imageName, imageTag, recorder);
+                if (imageResult != null) {
+                    LOGGER.info("Image [{}] was created by a concurrent process", imageNameWithTag);
+                    outcome = ImagePreparationReport.Outcome.BUILT_CONCURRENTLY;
                 } else {
-                    // e.g. parallel IT execution
-                    // we should not commit, because it will overwrite the tag and make the image dangling
-                    LOGGER.info("Concurrent process generated the image [{}], skipping commit", imageNameWithTag);
+                    if (isRegistryEnabled(flywayMigrationSet, true)
+                            && ImageRegistry.pull(imageNameWithTag, recorder)) {
+                        imageResult = findImageResult(flywayMigrationSet, baseImageName, imageName, imageTag,
+                                recorder);
+                        outcome = ImagePreparationReport.Outcome.PULLED;
+                    }
+                    if (imageResult == null) {
+                        buildImage(flywayMigrationSet, baseImageName, imageName, imageTag, buildCpus, recorder);
+                        imageResult = findImageResult(flywayMigrationSet, baseImageName, imageName, imageTag,
+                                recorder);
+                        Assert.state(imageResult != null, "Image " + imageNameWithTag + " does not exist");
+                        outcome = ImagePreparationReport.Outcome.BUILT;
+                    }
                 }
             } finally {
-                postgres.stop();
+                lock.close();
+            }
+        }
+        LOGGER.info("Image [{}] resolved ({}) in {} ms: {}", imageNameWithTag, outcome, recorder.getElapsedMillis(),
+                recorder.getSummary());
+        if (flywayMigrationSet.getStateBackend() == PostgresStateBackend.DOCKER_IMAGE) {
+            ImageAccessLog.recordAccess(imageName, imageTag);
+            if (outcome != ImagePreparationReport.Outcome.FOUND) {
+                // a new image appeared, the old ones may be obsolete
+                collectImages(flywayMigrationSet, imageName, imageTag);
+            }
+        }
+        return imageResult.withOutcome(outcome);
+    }
+
+    private void collectImages(FlywayMigrationSet flywayMigrationSet, String imageName, String imageTag) {
+        ImageRetentionPolicy retentionPolicy = getImageRetentionPolicy(flywayMigrationSet);
+        if (retentionPolicy == null) {
+            return;
+        }
+        try {
+            ImageGarbageCollector.collect(imageName, retentionPolicy, Collections.singleton(imageTag));
+        } catch (RuntimeException e) {
+            LOGGER.warn("Image GC of '{}' failed", imageName, e);
+        }
+    }
+
+    private void collectPgDataDirectories(FlywayMigrationSet flywayMigrationSet, String imageName, String imageTag) {
+        ImageRetentionPolicy retentionPolicy = getImageRetentionPolicy(flywayMigrationSet);
+        if (retentionPolicy == null) {
+            return;
+        }
+        try {
+            PgDataDirectories.collect(imageName, retentionPolicy, Collections.singleton(imageTag));
+        } catch (RuntimeException e) {
+            LOGGER.warn("PGDATA GC of '{}' failed", imageName, e);
+        }
+    }
+
+    @Nullable
+    private static ImageResult findImageResult(
+            FlywayMigrationSet flywayMigrationSet,
+            String baseImageName,
+            String imageName,
+            String imageTag,
+            BuildPhaseListener buildPhaseListener
+    ) {
+        String imageNameWithTag = imageName + ":" + imageTag;
+        try (BuildPhaseTimer timer = BuildPhaseTimer.start(buildPhaseListener, BuildPhase.FIND_IMAGE,
+                imageNameWithTag)) {
+            if (flywayMigrationSet.getStateBackend() == PostgresStateBackend.PGDATA_SNAPSHOT) {
+                Path snapshotFile = PgDataSnapshots.getSnapshotFile(imageName, imageTag);
+                if (!Files.isRegularFile(snapshotFile)) {
+                    timer.cacheHit(false).succeeded();
+                    return null;
+                }
+                timer.cacheHit(true).imageSize(snapshotFile.toFile().length()).succeeded();
+                // the snapshot is started from the base image with the same connection settings as the build
+                // container
+                return new ImageResult(DockerImageName.parse(baseImageName), snapshotFile, DB_NAME, DB_USER,
+                        DB_PASSWORD);
+            }
+            InspectImageResponse image = findImage(imageNameWithTag);
+            timer.cacheHit(image != null).imageSize(image == null ? null : image.getSize()).succeeded();
+            return image == null
+                    ? null : ImageResult.create(DockerImageName.parse(imageNameWithTag), image.getConfig());
+        }
+    }
+
+    private ImageBuildLockProvider.Lock acquireBuildLock(
+            String imageNameWithTag,
+            BuildPhaseListener buildPhaseListener
+    ) {
+        Duration timeout = getImageBuildLockTimeout();
+        ImageBuildLockProvider.Lock lock;
+        try (BuildPhaseTimer timer = BuildPhaseTimer.start(buildPhaseListener, BuildPhase.BUILD_LOCK_WAIT,
+                imageNameWithTag)) {
+            lock = getImageBuildLockProvider().acquire(imageNameWithTag, timeout);
+            timer.succeeded();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for build lock of " + imageNameWithTag, e);
+        }
+        if (lock == null) {
+            LOGGER.warn("Build lock of image [{}] was not acquired in {}, building without lock",
+                    imageNameWithTag, timeout);
+            return () -> {
+            };
+        }
+        return lock;
+    }
+
+    private void buildImage(
+            FlywayMigrationSet flywayMigrationSet,
+            String baseImageName,
+            String imageName,
+            String imageTag,
+            @Nullable Double buildCpus,
+            BuildPhaseListener buildPhaseListener
+    ) {
+        String imageNameWithTag = imageName + ":" + imageTag;
+        // per-file digests are cached, so the repeated calculation is cheap
+        FlywayChecksum checksum = FlywayChecksumUtils.calculate(baseImageName, flywayMigrationSet);
+        PostgresStateBackend stateBackend = flywayMigrationSet.getStateBackend();
+        // PGDATA snapshots are not used as ancestors, seed data can't be loaded on top of an ancestor having it
+        boolean incrementalBuild = flywayMigrationSet.isIncrementalBuild()
+                && stateBackend == PostgresStateBackend.DOCKER_IMAGE
+                && flywayMigrationSet.getSeedData().isEmpty();
+        String ancestorImage = incrementalBuild ? findAncestorImage(imageName, checksum) : null;
+        if (ancestorImage != null) {
+            try {
+                buildImage(flywayMigrationSet, baseImageName, imageName, imageTag, checksum, ancestorImage, buildCpus,
+                        buildPhaseListener);
+                return;
+            } catch (RuntimeException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                LOGGER.warn("Build of image [{}] from ancestor image [{}] failed, building from the base image",
+                        imageNameWithTag, ancestorImage, e);
+            }
+        }
+        buildImage(flywayMigrationSet, baseImageName, imageName, imageTag, checksum, null, buildCpus,
+                buildPhaseListener);
+    }
+
+    /**
+     * @param ancestorImage image having the init scripts and a prefix of the migrations applied, the base image is
+     *                      used if null
+     */
+    private void buildImage(
+            FlywayMigrationSet flywayMigrationSet,
+            String baseImageName,
+            String imageName,
+            String imageTag,
+            FlywayChecksum checksum,
+            @Nullable String ancestorImage,
+            @Nullable Double buildCpus,
+            BuildPhaseListener buildPhaseListener
+    ) {
+        String imageNameWithTag = imageName + ":" + imageTag;
+        PostgresExecutable postgres;
+        String jdbcUrl;
+        if (ancestorImage == null) {
+            LOGGER.info("Image [{}] does not exist, creating on demand", imageNameWithTag);
+            List<InitScript> initScripts = getInitScripts(flywayMigrationSet.getInitScriptPaths());
+            postgres = PostgresContainerAdapter.createPostgresContainerAdapterFromBaseImage(baseImageName)
+                    .withBuildProfile(flywayMigrationSet.getBuildProfile())
+                    .withCompaction(flywayMigrationSet.isCompactBeforeCommit())
+                    .withStateBackend(flywayMigrationSet.getStateBackend())
+                    .withCpuLimit(buildCpus)
+                    .withBuildPhaseListener(buildPhaseListener);
+            jdbcUrl = postgres.start(DB_NAME, DB_USER, DB_PASSWORD, initScripts);
+        } else {
+            LOGGER.info("Image [{}] does not exist, creating on demand from ancestor image [{}]",
+                    imageNameWithTag, ancestorImage);
+            // init scripts and the migrations prefix are already applied in the ancestor image
+            postgres = PostgresContainerAdapter.createPostgresContainerAdapterFromBaseImage(ancestorImage)
+                    .withBuildProfile(flywayMigrationSet.getBuildProfile())
+                    .withCompaction(flywayMigrationSet.isCompactBeforeCommit())
+                    .withStateBackend(flywayMigrationSet.getStateBackend())
+                    .withCpuLimit(buildCpus)
+                    .withBuildPhaseListener(buildPhaseListener);
+            jdbcUrl = postgres.start(DB_NAME, DB_USER, DB_PASSWORD, Collections.emptyList());
+        }
+        try {
+            migrate(flywayMigrationSet, imageNameWithTag, jdbcUrl, buildPhaseListener);
+            if (findImageResult(flywayMigrationSet, baseImageName, imageName, imageTag, buildPhaseListener) == null) {
+                postgres.saveState(imageName, imageTag, checksum.toImageLabels());
+                if (isRegistryEnabled(flywayMigrationSet, false)) {
+                    ImageRegistry.pushAsync(imageName, imageTag, getBuildPhaseListener());
+                }
+            } else {
+                // e.g. parallel IT execution without a shared build lock
+                // we should not commit, because it will overwrite the tag and make the image dangling
+                LOGGER.info("Concurrent process generated the image [{}], skipping commit", imageNameWithTag);
+            }
+        } finally {
+            postgres.stop();
+        }
+    }
+
+    /**
+     * Applies the migrations, the seed data and the dirty table tracking. The build is cancelled by the interruption
+     * of the build thread, it's checked between the build steps.
+     */
+    private void migrate(
+            FlywayMigrationSet flywayMigrationSet,
+            String imageNameWithTag,
+            String jdbcUrl,
+            BuildPhaseListener buildPhaseListener
+    ) {
+        Thread buildThread = Thread.currentThread();
+        try (BuildPhaseTimer timer = BuildPhaseTimer.start(buildPhaseListener, BuildPhase.FLYWAY_MIGRATE,
+                imageNameWithTag)) {
+            timer.migrationCount(executeMigrations(flywayMigrationSet, jdbcUrl, buildThread)).succeeded();
+        }
+        BuildCancellationCallback.checkNotCancelled(buildThread);
+        if (!flywayMigrationSet.getSeedData().isEmpty()) {
+            try (BuildPhaseTimer timer = BuildPhaseTimer.start(buildPhaseListener, BuildPhase.SEED_LOAD,
+                    imageNameWithTag)) {
+                SeedDataLoader.load(jdbcUrl, DB_USER, DB_PASSWORD, flywayMigrationSet.getSeedData());
+                timer.succeeded();
+            }
+        }
+        if (flywayMigrationSet.isDirtyTableTracking()) {
+            installDirtyTableTracking(jdbcUrl);
+        }
+        BuildCancellationCallback.checkNotCancelled(buildThread);
+    }
+
+    /**
+     * Finds the local image of the same name having the longest migration prefix of the checksum, see
+     * {@link FlywayChecksum#getPrefixDigests()}. Each incremental build adds a layer on top of the ancestor, so an
+     * ancestor having {@value #MAX_ANCESTOR_LAYERS} layers or more is not used, the image is built from the base image
+     * and starts a new chain.
+     *
+     * @return image name with tag or null if there is no such image
+     */
+    @SuppressWarnings("resource")
+    @Nullable
+    private static String findAncestorImage(String imageName, FlywayChecksum checksum) {
+        List<Image> images = DockerClientFactory.instance()
+                .client()
+                .listImagesCmd()
+                .withImageNameFilter(imageName)
+                .withLabelFilter(PersistenceImageLabels.MIGRATION_PREFIX_DIGEST)
+                .exec();
+        Map<String, String> prefixDigestsByRepoTag = new HashMap<>();
+        for (Image image : images) {
+            Map<String, String> labels = image.getLabels();
+            String repoTag = getRepoTag(image, imageName);
+            if (labels != null && repoTag != null) {
+                prefixDigestsByRepoTag.put(repoTag, labels.get(PersistenceImageLabels.MIGRATION_PREFIX_DIGEST));
+            }
+        }
+        String ancestorImage = selectAncestorImage(prefixDigestsByRepoTag, checksum.getPrefixDigests());
+        if (ancestorImage == null) {
+            return null;
+        }
+        InspectImageResponse image = findImage(ancestorImage);
+        int layerCount = image == null || image.getRootFS() == null || image.getRootFS().getLayers() == null
+                ? 0 : image.getRootFS().getLayers().size();
+        if (layerCount >= MAX_ANCESTOR_LAYERS) {
+            LOGGER.info("Ancestor image [{}] has {} layers, building from the base image", ancestorImage,
+                    layerCount);
+            return null;
+        }
+        return ancestorImage;
+    }
+
+    /**
+     * Selects the image having the longest prefix of the migrations.
+     *
+     * @param prefixDigestsByRepoTag {@link PersistenceImageLabels#MIGRATION_PREFIX_DIGEST} labels of the images
+     * @param prefixDigests          prefix digests of the migration set to build
+     * @return image name with tag or null if no image has a prefix of the migrations
+     */
+    @Nullable
+    static String selectAncestorImage(Map<String, String> prefixDigestsByRepoTag, List<String> prefixDigests) {
+        Map<String, Integer> prefixIndexes = new HashMap<>();
+        for (int i = 0; i < prefixDigests.size(); i++) {
+            prefixIndexes.put(prefixDigests.get(i), i);
+        }
+        String ancestorImage = null;
+        int ancestorIndex = -1;
+        for (Map.Entry<String, String> entry : prefixDigestsByRepoTag.entrySet()) {
+            Integer index = prefixIndexes.get(entry.getValue());
+            if (index != null && index > ancestorIndex) {
+                ancestorIndex = index;
+                ancestorImage = entry.getKey();
+            }
+        }
+        if (ancestorImage != null) {
+            LOGGER.info("Found ancestor image [{}] with {} of {} migrations applied", ancestorImage,
+                    ancestorIndex + 1, prefixDigests.size());
+        }
+        return ancestorImage;
+    }
+
+    @Nullable
+    private static String getRepoTag(Image image, String imageName) {
+        String[] repoTags = image.getRepoTags();
+        if (repoTags != null) {
+            for (String repoTag : repoTags) {
+                if (repoTag.startsWith(imageName + ":")) {
+                    return repoTag;
+                }
             }
-            Assert.state(image != null, "Image " + imageNameWithTag + " does not exist");
         }
-        return new ImageResult(DockerImageName.parse(imageNameWithTag), image.getConfig());
+        return null;
     }
 
     protected String getBaseImageName(FlywayMigrationSet flywayMigrationSet) {
@@ -124,23 +772,198 @@ public class PostgreSQLTestContainerTool {
     }
 
     protected String resolveImageTag(String baseImageName, FlywayMigrationSet flywayMigrationSet) {
-        return FlywayChecksumUtils.calculateChecksum(baseImageName, flywayMigrationSet.getInitScriptPaths(),
-                flywayMigrationSet.getMigrationResourcesPath());
+        return FlywayChecksumUtils.calculate(baseImageName, flywayMigrationSet).getTag();
     }
 
-    private void executeFlyway(FlywayMigrationSet flywayMigrationSet, String jdbcUrl) {
-        String schema = flywayMigrationSet.getSchema();
+    private static void installDirtyTableTracking(String jdbcUrl) {
+        try (Connection connection = DriverManager.getConnection(jdbcUrl, DB_USER, DB_PASSWORD)) {
+            DirtyTableTracking.install(connection);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to install dirty table tracking", e);
+        }
+    }
+
+    /**
+     * Applies the main migrations and the {@link FlywayMigrationSet#getSchemaMigrations() schema migrations}. Each of
+     * them is applied by its own Flyway instance over a separate connection, concurrently.
+     *
+     * @return number of the executed migrations
+     */
+    private int executeMigrations(FlywayMigrationSet flywayMigrationSet, String jdbcUrl, Thread buildThread) {
+        List<SchemaMigrations> schemaMigrations = flywayMigrationSet.getSchemaMigrations();
+        if (schemaMigrations.isEmpty()) {
+            return executeFlyway(jdbcUrl, flywayMigrationSet.getSchema(),
+                    flywayMigrationSet.getMigrationResourcesPath(), flywayMigrationSet.getFlywayTable(), buildThread);
+        }
+        ExecutorService executor = newDaemonExecutor("flyway-migrate-",
+                Math.min(schemaMigrations.size() + 1, Runtime.getRuntime().availableProcessors()));
+        try {
+            List<CompletableFuture<Integer>> futures = new ArrayList<>();
+            futures.add(CompletableFuture.supplyAsync(() -> executeFlyway(jdbcUrl, flywayMigrationSet.getSchema(),
+                    flywayMigrationSet.getMigrationResourcesPath(), flywayMigrationSet.getFlywayTable(), buildThread),
+                    executor));
+            for (SchemaMigrations migrations : schemaMigrations) {
+                futures.add(CompletableFuture.supplyAsync(() -> executeFlyway(jdbcUrl, migrations.getSchema(),
+                        migrations.getMigrationResourcesPath(), migrations.getFlywayTable(), buildThread), executor));
+            }
+            int migrationCount = 0;
+            RuntimeException failure = null;
+            // all migrations are awaited, so the container is not stopped under the running ones
+            for (CompletableFuture<Integer> future : futures) {
+                try {
+                    migrationCount += future.join();
+                } catch (CompletionException e) {
+                    RuntimeException cause = e.getCause() instanceof RuntimeException
+                            ? (RuntimeException) e.getCause()
+                            : e;
+                    if (failure == null) {
+                        failure = cause;
+                    } else {
+                        failure.addSuppressed(cause);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return migrationCount;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return number of the executed migrations
+     */
+    private int executeFlyway(
+            String jdbcUrl,
+            @Nullable String schema,
+            String migrationResourcesPath,
+            String flywayTable,
+            Thread buildThread
+    ) {
+        FluentConfiguration configuration = configureFlyway(jdbcUrl, schema, migrationResourcesPath, flywayTable);
+        List<Callback> callbacks = new ArrayList<>(Arrays.asList(configuration.getCallbacks()));
+        callbacks.add(new BuildCancellationCallback(buildThread));
+        configuration.callbacks(callbacks.toArray(new Callback[0]));
+
+        Flyway flyway = configuration.load();
+        return flyway.migrate().migrationsExecuted;
+    }
+
+    /**
+     * Flyway configuration of the location, customized by {@link #customizeFlyway}. The migrations are served from
+     * the catalog, which is already scanned for the checksum, see {@link MigrationCatalogResourceProvider#install}.
+     */
+    FluentConfiguration configureFlyway(
+            String jdbcUrl,
+            @Nullable String schema,
+            String migrationResourcesPath,
+            String flywayTable
+    ) {
+        MigrationCatalog catalog = MigrationCatalog.of(migrationResourcesPath);
         FluentConfiguration configuration = Flyway.configure()
                 .dataSource(jdbcUrl, DB_USER, DB_PASSWORD)
-                .locations("classpath:" + flywayMigrationSet.getMigrationResourcesPath())
-                .table(flywayMigrationSet.getFlywayTable())
+                .locations(catalog.getFlywayLocation())
+                .table(flywayTable)
                 .schemas(schema == null ? new String[0] : new String[]{schema})
                 .baselineOnMigrate(true);
 
         customizeFlyway(configuration);
+        MigrationCatalogResourceProvider.install(configuration, catalog);
+        return configuration;
+    }
 
-        Flyway flyway = configuration.load();
-        flyway.migrate();
+    /**
+     * Runtime mode of the containers created for the migration set, can be overridden by subclasses.
+     */
+    protected PostgresRuntimeMode getRuntimeMode(FlywayMigrationSet flywayMigrationSet) {
+        return flywayMigrationSet.getRuntimeMode();
+    }
+
+    /**
+     * Whether the containers of {@link #createReusablePostgreSQLContainer} are reused across JVM runs, e.g. on a
+     * developer machine. The container is recreated when the image tag changes. Requires
+     * {@code testcontainers.reuse.enable=true} in {@code ~/.testcontainers.properties}. Enabled via the
+     * {@value #CONTAINER_REUSE_PROPERTY} system property by default.
+     */
+    protected boolean isContainerReuseEnabled(FlywayMigrationSet flywayMigrationSet) {
+        return Boolean.getBoolean(CONTAINER_REUSE_PROPERTY);
+    }
+
+    /**
+     * Listener of the image resolution and build phases timings, by default
+     * {@link BuildPhaseListener#defaultListeners()}. Can be overridden by subclasses e.g. to export the timings as CI
+     * metrics.
+     */
+    protected BuildPhaseListener getBuildPhaseListener() {
+        return BuildPhaseListener.composite(BuildPhaseListener.defaultListeners());
+    }
+
+    /**
+     * Whether the missing image is pulled from the registry (defined by the {@link #resolveImageName image name}
+     * prefix) before it's built locally. Enabled via the {@value #REGISTRY_PULL_PROPERTY} system property by default.
+     */
+    protected boolean isRegistryPullEnabled(FlywayMigrationSet flywayMigrationSet) {
+        return Boolean.getBoolean(REGISTRY_PULL_PROPERTY);
+    }
+
+    /**
+     * Whether the built image is pushed to the registry in background. Enabled via the {@value #REGISTRY_PUSH_PROPERTY}
+     * system property by default.
+     */
+    protected boolean isRegistryPushEnabled(FlywayMigrationSet flywayMigrationSet) {
+        return Boolean.getBoolean(REGISTRY_PUSH_PROPERTY);
+    }
+
+    private boolean isRegistryEnabled(FlywayMigrationSet flywayMigrationSet, boolean pull) {
+        // PGDATA snapshots are local files
+        return flywayMigrationSet.getStateBackend() == PostgresStateBackend.DOCKER_IMAGE
+                && (pull ? isRegistryPullEnabled(flywayMigrationSet) : isRegistryPushEnabled(flywayMigrationSet));
+    }
+
+    /**
+     * Waits for the background pushes of the built images, e.g. at the end of a CI job. The pending pushes are also
+     * awaited on JVM shutdown for a limited time.
+     *
+     * @return true if all pushes are finished (successfully or not) in time
+     */
+    public static boolean awaitImagePushes(Duration timeout) {
+        return ImageRegistry.awaitPushes(timeout);
+    }
+
+    /**
+     * Retention policy of the local images of the migration set, applied after a new image is built or pulled. The
+     * same policy is applied to the cached PGDATA directories of {@link #startNativePostgreSQL} after a new directory
+     * is built. Returns null by default, so no images are removed.
+     */
+    @Nullable
+    protected ImageRetentionPolicy getImageRetentionPolicy(FlywayMigrationSet flywayMigrationSet) {
+        return null;
+    }
+
+    /**
+     * Default executor of {@link #createStartedPostgreSQLContainerAsync(FlywayMigrationSet)}: a virtual thread per
+     * task on Java 21+, a cached pool of daemon threads otherwise. The tasks mostly wait for docker and postgres, so
+     * the executor is not bounded.
+     */
+    protected Executor getAsyncExecutor() {
+        return DefaultAsyncExecutor.INSTANCE;
+    }
+
+    /**
+     * Lock provider coordinating the image builds between processes, can be overridden by subclasses e.g. to use
+     * a shared lock directory or a distributed lock.
+     */
+    protected ImageBuildLockProvider getImageBuildLockProvider() {
+        return DEFAULT_IMAGE_BUILD_LOCK_PROVIDER;
+    }
+
+    /**
+     * Max time to wait for the image built by another process.
+     */
+    protected Duration getImageBuildLockTimeout() {
+        return Duration.ofMinutes(15);
     }
 
     protected void customizeFlyway(FluentConfiguration configuration) {
@@ -169,14 +992,134 @@ public class PostgreSQLTestContainerTool {
         }
     }
 
+    private static final class DefaultAsyncExecutor {
+
+        private static final Executor INSTANCE = create();
+
+        private static Executor create() {
+            try {
+                // Java 21+, looked up reflectively to keep the Java 8 baseline
+                return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                AtomicInteger threadCounter = new AtomicInteger();
+                return Executors.newCachedThreadPool(runnable -> {
+                    Thread thread = new Thread(runnable, "postgres-async-" + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+    }
+
     private static class ImageResult {
 
         private final DockerImageName dockerImageName;
-        private final ContainerConfig config;
+        @Nullable
+        private final Path snapshotFile;
+        private final String database;
+        private final String user;
+        private final String password;
+        private final ImagePreparationReport.Outcome outcome;
+
+        private ImageResult(
+                DockerImageName dockerImageName,
+                @Nullable Path snapshotFile,
+                String database,
+                String user,
+                String password
+        ) {
+            this(dockerImageName, snapshotFile, database, user, password, ImagePreparationReport.Outcome.FOUND);
+        }
 
-        private ImageResult(DockerImageName dockerImageName, ContainerConfig config) {
+        private ImageResult(
+                DockerImageName dockerImageName,
+                @Nullable Path snapshotFile,
+                String database,
+                String user,
+                String password,
+                ImagePreparationReport.Outcome outcome
+        ) {
             this.dockerImageName = dockerImageName;
-            this.config = config;
+            this.snapshotFile = snapshotFile;
+            this.database = database;
+            this.user = user;
+            this.password = password;
+            this.outcome = outcome;
+        }
+
+        /**
+         * Tag of the image or the PGDATA snapshot
+         */
+        private String getTag() {
+            if (snapshotFile != null) {
+                String fileName = snapshotFile.getFileName().toString();
+                return fileName.substring(0, fileName.length() - ".tar.gz".length());
+            }
+            return dockerImageName.getVersionPart();
+        }
+
+        private ImageResult withOutcome(ImagePreparationReport.Outcome outcome) {
+            return new ImageResult(dockerImageName, snapshotFile, database, user, password, outcome);
+        }
+
+        private static ImageResult create(DockerImageName dockerImageName, @Nullable ContainerConfig config) {
+            Assert.state(config != null, "Can't determine connection settings because the image's config is null");
+            String[] envVars = config.getEnv();
+            Assert.state(envVars != null,
+                    "Can't determine connection settings because the image's environment variables are null");
+
+            String database = null;
+            String user = null;
+            String password = null;
+            for (String var : envVars) {
+                if (var.startsWith("POSTGRES_DB=")) {
+                    database = var.substring("POSTGRES_DB=".length());
+                }
+                if (var.startsWith("POSTGRES_USER=")) {
+                    user = var.substring("POSTGRES_USER=".length());
+                }
+                if (var.startsWith("POSTGRES_PASSWORD=")) {
+                    password = var.substring("POSTGRES_PASSWORD=".length());
+                }
+            }
+            Assert.state(database != null, "Can't determine database name. Env variable 'POSTGRES_DB' not found "
+                    + "inside the image");
+            Assert.state(user != null, "Can't determine user. Env variable 'POSTGRES_USER' not found inside the image");
+            Assert.state(password != null, "Can't determine password. Env variable 'POSTGRES_PASSWORD' not found "
+                    + "inside the image");
+            return new ImageResult(dockerImageName, null, database, user, password);
+        }
+    }
+
+    private static class ImageKey {
+
+        private final FlywayMigrationSet flywayMigrationSet;
+        private final String baseImageName;
+        private final String imageName;
+
+        private ImageKey(FlywayMigrationSet flywayMigrationSet, String baseImageName, String imageName) {
+            this.flywayMigrationSet = flywayMigrationSet;
+            this.baseImageName = baseImageName;
+            this.imageName = imageName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ImageKey)) {
+                return false;
+            }
+            ImageKey that = (ImageKey) o;
+            return flywayMigrationSet.equals(that.flywayMigrationSet)
+                    && baseImageName.equals(that.baseImageName)
+                    && imageName.equals(that.imageName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(flywayMigrationSet, baseImageName, imageName);
         }
     }
 }
@@ -0,0 +1,152 @@
+package com.miro.persistence.tooling.test;
+
+import static com.miro.persistence.tooling.test.ContainerDatabases.quote;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.github.dockerjava.api.model.Container;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.TestcontainersConfiguration;
+
+/**
+ * Long-lived containers reused across JVM runs, see {@link PostgreSQLTestContainerTool#isContainerReuseEnabled}.
+ * <p>
+ * The container is labeled with the image name and tag and found by testcontainers reuse (the tag is a part of the
+ * container hash, so a new tag starts a new container, the containers of the other tags are removed). On the first
+ * start the working database is copied to an in-container template, which is also the marker of a completely prepared
+ * container. On reattach the working database is dropped and cloned from the template, which takes milliseconds
+ * instead of a container start. A reattached container without the template is removed and started again.
+ * <p>
+ * The container is used by a single JVM at a time: the reuse lock of the image name is held until the JVM exits, other
+ * JVMs (and other containers of the same JVM) fall back to regular containers.
+ *
+ * @author Sergey Chernov
+ */
+final class ReusableContainers {
+
+    static final String REUSE_NAME_LABEL = "com.miro.persistence-tooling.reuse-name";
+    static final String REUSE_TAG_LABEL = "com.miro.persistence-tooling.reuse-tag";
+
+    static final String TEMPLATE_DATABASE = "persistence_tooling_template";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReusableContainers.class);
+
+    /**
+     * Reuse locks held by this JVM, never released
+     */
+    private static final ConcurrentMap<String, ImageBuildLockProvider.Lock> LOCKS = new ConcurrentHashMap<>();
+
+    /**
+     * @return true if this JVM holds the reuse lock of the image name, false if the container can't be reused
+     */
+    static boolean tryLock(String imageName, ImageBuildLockProvider lockProvider) {
+        if (!TestcontainersConfiguration.getInstance().environmentSupportsReuse()) {
+            LOGGER.warn("Container reuse of [{}] is skipped, it should be enabled via testcontainers.reuse.enable=true "
+                    + "in ~/.testcontainers.properties", imageName);
+            return false;
+        }
+        if (LOCKS.containsKey(imageName)) {
+            LOGGER.info("Reusable container of [{}] is already used by this JVM, starting a new one", imageName);
+            return false;
+        }
+        synchronized (LOCKS) {
+            if (LOCKS.containsKey(imageName)) {
+                return false;
+            }
+            ImageBuildLockProvider.Lock lock;
+            try {
+                lock = lockProvider.acquire("reuse-" + imageName, Duration.ZERO);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            if (lock == null) {
+                LOGGER.info("Reusable container of [{}] is used by another process, starting a new one", imageName);
+                return false;
+            }
+            LOCKS.put(imageName, lock);
+            return true;
+        }
+    }
+
+    /**
+     * Prepares the started container: creates the template on the first start, restores the working database from
+     * the template on reattach. The containers of the same image name with other tags are removed.
+     *
+     * @return false if the reattached container has no template, so it can't be reset
+     */
+    static boolean prepare(PostgreSQLContainer<?> container, String imageName, boolean reused) {
+        long startNanos = System.nanoTime();
+        try (Connection connection = ContainerDatabases.connect(container, ContainerDatabases.MAINTENANCE_DATABASE);
+             Statement statement = connection.createStatement()) {
+            String database = container.getDatabaseName();
+            if (!reused) {
+                statement.execute("CREATE DATABASE " + TEMPLATE_DATABASE + " TEMPLATE " + quote(database));
+                statement.execute("ALTER DATABASE " + TEMPLATE_DATABASE + " WITH IS_TEMPLATE true "
+                        + "ALLOW_CONNECTIONS false");
+                LOGGER.info("Reusable container of [{}] started, template database created", imageName);
+            } else {
+                if (!hasTemplate(statement)) {
+                    LOGGER.warn("Reusable container {} of [{}] has no template database, it will be recreated",
+                            container.getContainerId(), imageName);
+                    return false;
+                }
+                int serverVersion = ContainerDatabases.getServerVersion(statement);
+                ContainerDatabases.dropDatabase(statement, database, serverVersion);
+                statement.execute("CREATE DATABASE " + quote(database) + " TEMPLATE " + TEMPLATE_DATABASE
+                        + ContainerDatabases.getCloneStrategyClause(serverVersion));
+                LOGGER.info("Reusable container of [{}] reattached, database reset in {} ms", imageName,
+                        (System.nanoTime() - startNanos) / 1_000_000);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to prepare reusable container of " + imageName, e);
+        }
+        removeOtherContainers(container, imageName);
+        return true;
+    }
+
+    private static boolean hasTemplate(Statement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery(
+                "SELECT 1 FROM pg_database WHERE datname = '" + TEMPLATE_DATABASE + "'")) {
+            return resultSet.next();
+        }
+    }
+
+    @SuppressWarnings("resource")
+    private static void removeOtherContainers(PostgreSQLContainer<?> container, String imageName) {
+        DockerClient dockerClient = container.getDockerClient();
+        List<Container> containers = dockerClient.listContainersCmd()
+                .withShowAll(true)
+                .withLabelFilter(Collections.singletonMap(REUSE_NAME_LABEL, imageName))
+                .exec();
+        for (Container other : containers) {
+            if (other.getId().equals(container.getContainerId())) {
+                continue;
+            }
+            LOGGER.info("Removing reusable container {} of [{}] with tag {}", other.getId(), imageName,
+                    other.getLabels() == null ? null : other.getLabels().get(REUSE_TAG_LABEL));
+            try {
+                dockerClient.removeContainerCmd(other.getId())
+                        .withForce(true)
+                        .withRemoveVolumes(true)
+                        .exec();
+            } catch (NotFoundException e) {
+                // removed concurrently
+            }
+        }
+    }
+
+    private ReusableContainers() {
+    }
+}
@@ -0,0 +1,138 @@
+package com.miro.persistence.tooling.test;
+
+import com.github.dockerjava.api.command.InspectContainerResponse;
+import com.miro.persistence.tooling.core.BuildPhase;
+import com.miro.persistence.tooling.core.BuildPhaseListener;
+import com.miro.persistence.tooling.core.BuildPhaseTimer;
+import com.miro.persistence.tooling.core.PersistenceImageLabels;
+import com.miro.persistence.tooling.core.PgDataSnapshots;
+import com.miro.persistence.tooling.core.PostgresRuntimeMode;
+import jakarta.annotation.Nullable;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+/**
+ * Container of the migrated database returned by {@link PostgreSQLTestContainerTool}. Either the committed migration
+ * image is started as is, or the base image with the PGDATA snapshot extracted before start.
+ *
+ * @author Sergey Chernov
+ */
+class RuntimePostgreSQLContainer extends PostgreSQLContainer<RuntimePostgreSQLContainer> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RuntimePostgreSQLContainer.class);
+
+    private static final String TMPFS_PGDATA = "/var/lib/postgresql/data-tmpfs";
+
+    @Nullable
+    private final Path snapshotFile;
+
+    private final BuildPhaseListener buildPhaseListener;
+
+    /**
+     * Image name of the reusable container, null if the container is not reused
+     */
+    @Nullable
+    private String reuseName;
+
+    private boolean reused;
+
+    RuntimePostgreSQLContainer(
+            DockerImageName imageName,
+            @Nullable Path snapshotFile,
+            PostgresRuntimeMode runtimeMode,
+            BuildPhaseListener buildPhaseListener
+    ) {
+        super(imageName);
+        this.snapshotFile = snapshotFile;
+        this.buildPhaseListener = buildPhaseListener;
+        if (snapshotFile != null) {
+            addEnv("PGDATA", PgDataSnapshots.PGDATA);
+        }
+        if (runtimeMode == PostgresRuntimeMode.TMPFS) {
+            withTmpFs(Collections.singletonMap(TMPFS_PGDATA, "rw"));
+            addEnv("PGDATA", TMPFS_PGDATA);
+            // the image entrypoint executes non-postgres commands as is (as root), the nested entrypoint call fixes
+            // the ownership of the copied PGDATA and starts postgres as postgres user
+            setCommand("sh", "-c", "cp -a " + PgDataSnapshots.PGDATA + "/. " + TMPFS_PGDATA + "/"
+                    + " && exec docker-entrypoint.sh postgres"
+                    + " -c fsync=off -c synchronous_commit=off -c full_page_writes=off");
+        }
+    }
+
+    /**
+     * Makes the container reusable across JVM runs, see {@link ReusableContainers}. {@link #stop()} of the reusable
+     * container does nothing, so it's left running for the next run.
+     */
+    void enableReuse(String imageName, String tag) {
+        this.reuseName = imageName;
+        withReuse(true);
+        withLabel(ReusableContainers.REUSE_NAME_LABEL, imageName);
+        withLabel(ReusableContainers.REUSE_TAG_LABEL, tag);
+    }
+
+    @Override
+    public void start() {
+        if (getContainerId() != null) {
+            // already started, e.g. by the pool
+            super.start();
+            return;
+        }
+        try (BuildPhaseTimer timer = BuildPhaseTimer.start(buildPhaseListener, BuildPhase.RUNTIME_START,
+                getDockerImageName())) {
+            super.start();
+            if (reuseName != null && !ReusableContainers.prepare(this, reuseName, reused)) {
+                // removes the broken container, so the next start creates a new one
+                super.stop();
+                super.start();
+                Assert.state(ReusableContainers.prepare(this, reuseName, reused),
+                        () -> "Failed to prepare reusable container of " + reuseName);
+            }
+            timer.succeeded();
+        }
+    }
+
+    /**
+     * Stops the container unless it's reusable, e.g. on close of the test context.
+     */
+    @Override
+    public void stop() {
+        if (reuseName != null) {
+            LOGGER.debug("Reusable container {} of [{}] is left running", getContainerId(), reuseName);
+            return;
+        }
+        super.stop();
+    }
+
+    /**
+     * Fingerprint of the schema saved in the image (or the PGDATA snapshot), null for images built before the
+     * fingerprint was introduced.
+     */
+    @Nullable
+    String getExpectedSchemaFingerprint() {
+        if (snapshotFile != null) {
+            return PgDataSnapshots.readMetadata(snapshotFile).get(PersistenceImageLabels.SCHEMA_FINGERPRINT);
+        }
+        Map<String, String> labels = getContainerInfo().getConfig().getLabels();
+        return labels == null ? null : labels.get(PersistenceImageLabels.SCHEMA_FINGERPRINT);
+    }
+
+    @Override
+    protected void containerIsStarting(InspectContainerResponse containerInfo, boolean reused) {
+        super.containerIsStarting(containerInfo, reused);
+        this.reused = reused;
+    }
+
+    @Override
+    protected void containerIsCreated(String containerId) {
+        super.containerIsCreated(containerId);
+        if (snapshotFile != null) {
+            PgDataSnapshots.restore(getDockerClient(), containerId, snapshotFile);
+        }
+    }
+}
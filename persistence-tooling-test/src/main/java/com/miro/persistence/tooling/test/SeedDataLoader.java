@@ -0,0 +1,154 @@
+package com.miro.persistence.tooling.test;
+
+import com.miro.persistence.tooling.core.SeedData;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams the seed data into the build container via {@link CopyManager}. Each table is loaded in its own transaction
+ * over a separate connection, the tables are loaded in parallel:
+ * <ul>
+ *     <li>triggers and foreign keys are disabled via {@code session_replication_role}, so the tables can be loaded in
+ *     any order</li>
+ *     <li>secondary indexes (not backing constraints) are dropped before the load and recreated after it</li>
+ * </ul>
+ *
+ * @author Sergey Chernov
+ */
+final class SeedDataLoader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SeedDataLoader.class);
+
+    private static final int COPY_BUFFER_SIZE = 256 * 1024;
+
+    private static final String SECONDARY_INDEXES_SQL = "SELECT i.indexrelid::regclass::text, "
+            + "pg_get_indexdef(i.indexrelid) "
+            + "FROM pg_index i "
+            + "JOIN pg_class ic ON ic.oid = i.indexrelid "
+            // partitioned indexes and their partitions can't be dropped and recreated one by one
+            + "WHERE i.indrelid = CAST(? AS regclass) AND ic.relkind = 'i' AND NOT ic.relispartition "
+            + "AND NOT EXISTS (SELECT 1 FROM pg_constraint c WHERE c.conindid = i.indexrelid)";
+
+    /**
+     * @return number of the loaded rows
+     */
+    static long load(String jdbcUrl, String user, String password, List<SeedData> seedData) {
+        Map<String, List<SeedData>> seedDataByTable = seedData.stream()
+                .collect(Collectors.groupingBy(SeedData::getTable, LinkedHashMap::new, Collectors.toList()));
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(seedDataByTable.size(), Runtime.getRuntime().availableProcessors()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "seed-data-" + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            List<CompletableFuture<Long>> futures = new ArrayList<>();
+            seedDataByTable.forEach((table, tableSeedData) -> futures.add(CompletableFuture.supplyAsync(
+                    () -> loadTable(jdbcUrl, user, password, table, tableSeedData), executor)));
+            long rowCount = 0;
+            RuntimeException failure = null;
+            for (CompletableFuture<Long> future : futures) {
+                try {
+                    rowCount += future.join();
+                } catch (CompletionException e) {
+                    RuntimeException cause = e.getCause() instanceof RuntimeException
+                            ? (RuntimeException) e.getCause()
+                            : e;
+                    if (failure == null) {
+                        failure = cause;
+                    } else {
+                        failure.addSuppressed(cause);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return rowCount;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long loadTable(String jdbcUrl, String user, String password, String table,
+            List<SeedData> tableSeedData) {
+        long startNanos = System.nanoTime();
+        try (Connection connection = DriverManager.getConnection(jdbcUrl, user, password)) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET LOCAL session_replication_role = replica");
+            }
+            List<String> indexDefinitions = dropSecondaryIndexes(connection, table);
+            CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+            long rowCount = 0;
+            for (SeedData seed : tableSeedData) {
+                try (InputStream in = seed.openInputStream()) {
+                    rowCount += copyManager.copyIn(seed.getCopySql(), in, COPY_BUFFER_SIZE);
+                }
+            }
+            try (Statement statement = connection.createStatement()) {
+                for (String indexDefinition : indexDefinitions) {
+                    statement.execute(indexDefinition);
+                }
+                statement.execute("ANALYZE " + table);
+            }
+            connection.commit();
+            LOGGER.info("Seed data of {} loaded ({} rows, {} indexes rebuilt) in {} ms", table, rowCount,
+                    indexDefinitions.size(), (System.nanoTime() - startNanos) / 1_000_000);
+            return rowCount;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to load seed data of " + table, e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read seed data of " + table, e);
+        }
+    }
+
+    /**
+     * @return definitions of the dropped indexes
+     */
+    private static List<String> dropSecondaryIndexes(Connection connection, String table) throws SQLException {
+        List<String> indexNames = new ArrayList<>();
+        List<String> indexDefinitions = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(SECONDARY_INDEXES_SQL)) {
+            statement.setString(1, table);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    indexNames.add(resultSet.getString(1));
+                    indexDefinitions.add(resultSet.getString(2));
+                }
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            for (String indexName : indexNames) {
+                statement.execute("DROP INDEX " + indexName);
+            }
+        }
+        return indexDefinitions;
+    }
+
+    private SeedDataLoader() {
+    }
+}
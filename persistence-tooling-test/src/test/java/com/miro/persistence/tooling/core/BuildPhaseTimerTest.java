@@ -0,0 +1,49 @@
+package com.miro.persistence.tooling.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class BuildPhaseTimerTest {
+
+    @Test
+    public void close_whenSucceeded_shouldReportSuccessWithMetrics() {
+        List<BuildPhaseEvent> events = new ArrayList<>();
+
+        try (var timer = BuildPhaseTimer.start(events::add, BuildPhase.FIND_IMAGE, "image:tag")) {
+            timer.cacheHit(true).imageSize(42L).succeeded();
+        }
+
+        assertThat(events).hasSize(1);
+        var event = events.get(0);
+        assertThat(event.getPhase()).isEqualTo(BuildPhase.FIND_IMAGE);
+        assertThat(event.getImageName()).isEqualTo("image:tag");
+        assertThat(event.isSuccess()).isTrue();
+        assertThat(event.getCacheHit()).isTrue();
+        assertThat(event.getImageSize()).isEqualTo(42L);
+        assertThat(event.getMigrationCount()).isNull();
+        assertThat(event.getDuration()).isNotNegative();
+    }
+
+    @Test
+    public void close_whenNotSucceeded_shouldReportFailure() {
+        List<BuildPhaseEvent> events = new ArrayList<>();
+
+        try (var timer = BuildPhaseTimer.start(events::add, BuildPhase.FLYWAY_MIGRATE, "image:tag")) {
+            timer.migrationCount(3);
+        }
+
+        assertThat(events).singleElement().satisfies(event -> assertThat(event.isSuccess()).isFalse());
+    }
+
+    @Test
+    public void close_whenListenerFails_shouldNotThrow() {
+        var timer = BuildPhaseTimer.start(event -> {
+            throw new IllegalStateException("listener failure");
+        }, BuildPhase.CHECKSUM, "image");
+
+        timer.succeeded().close();
+    }
+}
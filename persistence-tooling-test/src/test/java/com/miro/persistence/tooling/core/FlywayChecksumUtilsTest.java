@@ -0,0 +1,142 @@
+package com.miro.persistence.tooling.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FlywayChecksumUtilsTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path migrationsDir;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        System.setProperty(FlywayChecksumCache.CACHE_DIR_PROPERTY, tempDir.resolve("cache").toString());
+        migrationsDir = Files.createDirectories(tempDir.resolve("migrations"));
+        Files.writeString(migrationsDir.resolve("V1__create_users.sql"), "CREATE TABLE users (id BIGINT);");
+        Files.writeString(migrationsDir.resolve("V2__add_users_name.sql"), "ALTER TABLE users ADD name TEXT;");
+        // the recently modified files are not cached
+        var lastModified = FileTime.from(Instant.now().minus(Duration.ofMinutes(1)));
+        Files.setLastModifiedTime(migrationsDir.resolve("V1__create_users.sql"), lastModified);
+        Files.setLastModifiedTime(migrationsDir.resolve("V2__add_users_name.sql"), lastModified);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        System.clearProperty(FlywayChecksumCache.CACHE_DIR_PROPERTY);
+    }
+
+    @Test
+    public void calculateChecksum_whenCacheIsWarm_shouldReturnSameChecksum() {
+        var cold = calculateChecksum();
+        var warm = calculateChecksum();
+
+        assertThat(cold).startsWith("V2-").hasSize("V2-".length() + 6);
+        assertThat(warm).isEqualTo(cold);
+        assertThat(tempDir.resolve("cache")).isNotEmptyDirectory();
+    }
+
+    @Test
+    public void calculateChecksum_whenMigrationChanged_shouldReturnNewChecksum() throws IOException {
+        var before = calculateChecksum();
+        Files.writeString(migrationsDir.resolve("V2__add_users_name.sql"), "ALTER TABLE users ADD full_name TEXT;");
+
+        assertThat(calculateChecksum()).isNotEqualTo(before);
+    }
+
+    @Test
+    public void calculateChecksum_whenMigrationChangedKeepingSizeAndTimestamp_shouldReturnNewChecksum()
+            throws IOException {
+        var migration = migrationsDir.resolve("V2__add_users_name.sql");
+        Files.writeString(migration, "ALTER TABLE users ADD name TEXT;");
+        var lastModified = Files.getLastModifiedTime(migration);
+        var before = calculateChecksum();
+        // edited within the timestamp granularity of the filesystem
+        Files.writeString(migration, "ALTER TABLE users ADD nick TEXT;");
+        Files.setLastModifiedTime(migration, lastModified);
+
+        assertThat(calculateChecksum()).isNotEqualTo(before);
+    }
+
+    @Test
+    public void calculateChecksum_whenCacheDisabled_shouldReturnSameChecksum() {
+        var cached = calculateChecksum();
+        System.setProperty(FlywayChecksumCache.CACHE_ENABLED_PROPERTY, "false");
+        try {
+            assertThat(calculateChecksum()).isEqualTo(cached);
+        } finally {
+            System.clearProperty(FlywayChecksumCache.CACHE_ENABLED_PROPERTY);
+        }
+    }
+
+    @Test
+    public void calculateChecksum_whenDigestAlgorithmChanged_shouldReturnOtherChecksum() {
+        var sha1 = calculateChecksum();
+        var sha512 = FlywayChecksumUtils.calculateChecksum("postgres:15.4-alpine", List.of(),
+                "filesystem:" + migrationsDir, "SHA-512/256");
+
+        assertThat(sha512).startsWith("V2-").isNotEqualTo(sha1);
+    }
+
+    @Test
+    public void calculate_whenSchemaMigrationsChanged_shouldReturnNewChecksum() throws IOException {
+        var auditDir = Files.createDirectories(tempDir.resolve("audit"));
+        Files.writeString(auditDir.resolve("V1__create_events.sql"), "CREATE TABLE events (id BIGINT);");
+        var withoutSchemaMigrations = calculateChecksum();
+        var withSchemaMigrations = calculateChecksum(SchemaMigrations.of("audit", "filesystem:" + auditDir));
+        Files.writeString(auditDir.resolve("V2__add_events_name.sql"), "ALTER TABLE events ADD name TEXT;");
+        var changedSchemaMigrations = calculateChecksum(SchemaMigrations.of("audit", "filesystem:" + auditDir));
+
+        assertThat(calculateChecksum()).isEqualTo(withoutSchemaMigrations);
+        assertThat(withSchemaMigrations).startsWith("V2-").isNotEqualTo(withoutSchemaMigrations);
+        assertThat(changedSchemaMigrations).startsWith("V2-").isNotEqualTo(withSchemaMigrations);
+    }
+
+    @Test
+    public void calculate_whenSeedDataChanged_shouldReturnNewChecksum() throws IOException {
+        var seedFile = tempDir.resolve("users.csv");
+        Files.writeString(seedFile, "id,name\n1,Alice\n");
+        var withoutSeedData = calculateChecksum();
+        var withSeedData = calculateChecksum(SeedData.csv("users", "filesystem:" + seedFile));
+        Files.writeString(seedFile, "id,name\n1,Alice\n2,Bob\n");
+        var changedSeedData = calculateChecksum(SeedData.csv("users", "filesystem:" + seedFile));
+
+        assertThat(withSeedData).startsWith("V2-").isNotEqualTo(withoutSeedData);
+        assertThat(changedSeedData).startsWith("V2-").isNotEqualTo(withSeedData);
+    }
+
+    private String calculateChecksum(SeedData seedData) {
+        var flywayMigrationSet = FlywayMigrationSet.builder()
+                .migrationResourcesPath("filesystem:" + migrationsDir)
+                .dockerImageName("postgres-it")
+                .seedData(seedData)
+                .build();
+        return FlywayChecksumUtils.calculate("postgres:15.4-alpine", flywayMigrationSet).getTag();
+    }
+
+    private String calculateChecksum(SchemaMigrations... schemaMigrations) {
+        var flywayMigrationSet = FlywayMigrationSet.builder()
+                .migrationResourcesPath("filesystem:" + migrationsDir)
+                .dockerImageName("postgres-it")
+                .schemaMigrations(schemaMigrations)
+                .build();
+        return FlywayChecksumUtils.calculate("postgres:15.4-alpine", flywayMigrationSet).getTag();
+    }
+
+    private String calculateChecksum() {
+        return FlywayChecksumUtils.calculateChecksum("postgres:15.4-alpine", List.of(),
+                "filesystem:" + migrationsDir);
+    }
+}
@@ -0,0 +1,63 @@
+package com.miro.persistence.tooling.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class ImageGarbageCollectorTest {
+
+    private static final Instant NOW = Instant.parse("2025-06-01T12:00:00Z");
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    public void selectForRemoval_shouldKeepLatestAndRecentlyUsed() {
+        var candidates = List.of(
+                candidate("V1-aaaaaa", Duration.ofDays(30), 100 * MB, false),
+                candidate("V2-bbbbbb", Duration.ofDays(10), 100 * MB, false),
+                candidate("V3-cccccc", Duration.ofDays(2), 100 * MB, false),
+                candidate("V4-dddddd", Duration.ofHours(1), 100 * MB, false));
+        var policy = ImageRetentionPolicy.builder()
+                .keepLatest(1)
+                .maxUnusedAge(Duration.ofDays(7))
+                .build();
+
+        assertThat(ImageGarbageCollector.selectForRemoval(candidates, policy, NOW))
+                .extracting(Object::toString)
+                .containsExactly("[V2-bbbbbb]", "[V1-aaaaaa]");
+    }
+
+    @Test
+    public void selectForRemoval_whenDiskBudgetExceeded_shouldRemoveLeastRecentlyUsed() {
+        var candidates = List.of(
+                candidate("V1-aaaaaa", Duration.ofHours(3), 100 * MB, false),
+                candidate("V2-bbbbbb", Duration.ofHours(2), 100 * MB, false),
+                candidate("V3-cccccc", Duration.ofHours(1), 100 * MB, false));
+        var policy = ImageRetentionPolicy.builder()
+                .keepLatest(1)
+                .diskBudgetBytes(250 * MB)
+                .build();
+
+        assertThat(ImageGarbageCollector.selectForRemoval(candidates, policy, NOW))
+                .extracting(Object::toString)
+                .containsExactly("[V1-aaaaaa]");
+    }
+
+    @Test
+    public void selectForRemoval_whenRemoveAll_shouldKeepProtectedOnly() {
+        var candidates = List.of(
+                candidate("V1-aaaaaa", Duration.ofDays(1), 100 * MB, false),
+                candidate("V2-bbbbbb", Duration.ofMinutes(1), 100 * MB, true));
+
+        assertThat(ImageGarbageCollector.selectForRemoval(candidates, ImageRetentionPolicy.removeAll(), NOW))
+                .extracting(Object::toString)
+                .containsExactly("[V1-aaaaaa]");
+    }
+
+    private static ImageGarbageCollector.Candidate candidate(String tag, Duration unusedFor, long size,
+            boolean protectedImage) {
+        return new ImageGarbageCollector.Candidate(List.of(tag), NOW.minus(unusedFor), size, protectedImage);
+    }
+}
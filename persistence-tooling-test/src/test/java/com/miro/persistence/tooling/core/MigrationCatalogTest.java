@@ -0,0 +1,69 @@
+package com.miro.persistence.tooling.core;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.flywaydb.core.api.MigrationVersion;
+import org.flywaydb.core.api.resource.LoadableResource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.FileCopyUtils;
+
+public class MigrationCatalogTest {
+
+    @TempDir
+    Path tempDir;
+
+    private String location;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Files.writeString(tempDir.resolve("V10__add_users_email.sql"), "ALTER TABLE users ADD email TEXT;");
+        Files.writeString(tempDir.resolve("V2__add_users_name.sql"), "ALTER TABLE users ADD name TEXT;");
+        Files.writeString(tempDir.resolve("V1__create_users.sql"), "CREATE TABLE users (id BIGINT);");
+        location = "filesystem:" + tempDir.toAbsolutePath();
+    }
+
+    @Test
+    public void of_shouldSortEntriesByVersion() {
+        var catalog = MigrationCatalog.of(location);
+
+        assertThat(catalog.getEntries())
+                .extracting(MigrationCatalog.Entry::getFileName)
+                .containsExactly("V1__create_users.sql", "V2__add_users_name.sql", "V10__add_users_email.sql");
+        assertThat(catalog.getLatestVersion()).isEqualTo(MigrationVersion.fromVersion("10"));
+        assertThat(catalog.getFlywayLocation()).isEqualTo(location);
+        assertThat(catalog.getEntry("V2__add_users_name.sql").getContent())
+                .isEqualTo("ALTER TABLE users ADD name TEXT;".getBytes(UTF_8));
+    }
+
+    @Test
+    public void resourceProvider_shouldServeCatalogEntries() throws IOException {
+        var provider = new MigrationCatalogResourceProvider(MigrationCatalog.of(location), UTF_8);
+
+        assertThat(provider.getResources("V", new String[]{".sql"}))
+                .extracting(LoadableResource::getFilename)
+                .containsExactly("V1__create_users.sql", "V2__add_users_name.sql", "V10__add_users_email.sql");
+        assertThat(provider.getResources("R", new String[]{".sql"})).isEmpty();
+        assertThat(provider.getResource("V0__missing.sql")).isNull();
+        try (Reader reader = provider.getResource("V1__create_users.sql").read()) {
+            assertThat(FileCopyUtils.copyToString(reader)).isEqualTo("CREATE TABLE users (id BIGINT);");
+        }
+    }
+
+    @Test
+    public void of_whenMigrationsInSubdirectory_shouldReportUnservedResources() throws IOException {
+        Files.writeString(Files.createDirectories(tempDir.resolve("nested")).resolve("V3__add_users_age.sql"),
+                "ALTER TABLE users ADD age INT;");
+
+        var catalog = MigrationCatalog.of(location);
+
+        assertThat(catalog.getEntries()).hasSize(3);
+        assertThat(catalog.getUnservedResources()).singleElement().asString().contains("V3__add_users_age.sql");
+    }
+}
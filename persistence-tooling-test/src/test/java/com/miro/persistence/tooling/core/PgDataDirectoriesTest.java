@@ -0,0 +1,60 @@
+package com.miro.persistence.tooling.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PgDataDirectoriesTest {
+
+    private static final String IMAGE_NAME = "postgres-it";
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    public void setUp() {
+        System.setProperty(FlywayChecksumCache.CACHE_DIR_PROPERTY, tempDir.resolve("cache").toString());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        System.clearProperty(FlywayChecksumCache.CACHE_DIR_PROPERTY);
+    }
+
+    @Test
+    public void collect_shouldRemoveDirectoriesExceptProtected() throws IOException {
+        save("V1-aaaaaa");
+        save("V2-bbbbbb");
+        ImageAccessLog.recordAccess(IMAGE_NAME, "V1-aaaaaa");
+
+        var removed = PgDataDirectories.collect(IMAGE_NAME, ImageRetentionPolicy.removeAll(), Set.of("V2-bbbbbb"));
+
+        assertThat(removed).containsExactly("postgres-it:V1-aaaaaa");
+        assertThat(PgDataDirectories.getDirectory(IMAGE_NAME, "V1-aaaaaa")).doesNotExist();
+        assertThat(PgDataDirectories.getDirectory(IMAGE_NAME, "V1-aaaaaa").resolveSibling("V1-aaaaaa.properties"))
+                .doesNotExist();
+        assertThat(ImageAccessLog.getLastAccess(IMAGE_NAME)).doesNotContainKey("V1-aaaaaa");
+        assertThat(PgDataDirectories.readMetadata(PgDataDirectories.getDirectory(IMAGE_NAME, "V2-bbbbbb")))
+                .containsEntry("tag", "V2-bbbbbb");
+    }
+
+    @Test
+    public void collect_whenNoDirectories_shouldRemoveNothing() {
+        assertThat(PgDataDirectories.collect(IMAGE_NAME, ImageRetentionPolicy.removeAll(), Set.of())).isEmpty();
+    }
+
+    private void save(String tag) throws IOException {
+        var dataDir = PgDataDirectories.createWorkDirectory("build").resolve("pgdata");
+        Files.createDirectories(dataDir.resolve("base"));
+        Files.writeString(dataDir.resolve("PG_VERSION"), "15");
+        PgDataDirectories.save(dataDir, IMAGE_NAME, tag, Map.of("tag", tag));
+    }
+}
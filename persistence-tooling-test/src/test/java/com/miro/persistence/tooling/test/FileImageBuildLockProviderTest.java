@@ -0,0 +1,75 @@
+package com.miro.persistence.tooling.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FileImageBuildLockProviderTest {
+
+    private static final String IMAGE = "postgres-it:V2-33f7f7";
+
+    @TempDir
+    Path lockDir;
+
+    private FileImageBuildLockProvider lockProvider;
+
+    @BeforeEach
+    public void setUp() {
+        lockProvider = new FileImageBuildLockProvider(lockDir);
+    }
+
+    @Test
+    public void acquire_whenLockIsHeldByOtherThread_shouldReturnNullAfterTimeout() throws Exception {
+        try (var lock = lockProvider.acquire(IMAGE, Duration.ZERO)) {
+            assertThat(lock).isNotNull();
+
+            var other = CompletableFuture.supplyAsync(() -> acquire(Duration.ofMillis(200))).join();
+
+            assertThat(other).isNull();
+        }
+    }
+
+    @Test
+    public void acquire_whenLockIsReleased_shouldAcquireAgain() throws Exception {
+        lockProvider.acquire(IMAGE, Duration.ZERO).close();
+
+        var acquiredByOther = CompletableFuture.supplyAsync(() -> {
+            try (var lock = acquire(Duration.ofSeconds(10))) {
+                return lock != null;
+            }
+        }).join();
+
+        assertThat(acquiredByOther).isTrue();
+        try (var lock = lockProvider.acquire(IMAGE, Duration.ZERO)) {
+            assertThat(lock).isNotNull();
+        }
+    }
+
+    @Test
+    public void acquire_whenLockIsHeldByCurrentThread_shouldFail() throws Exception {
+        try (var lock = lockProvider.acquire(IMAGE, Duration.ZERO)) {
+            assertThat(lock).isNotNull();
+
+            assertThatThrownBy(() -> lockProvider.acquire(IMAGE, Duration.ofSeconds(1)))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("already held by the current thread");
+        }
+        try (var lock = lockProvider.acquire(IMAGE, Duration.ZERO)) {
+            assertThat(lock).isNotNull();
+        }
+    }
+
+    private ImageBuildLockProvider.Lock acquire(Duration timeout) {
+        try {
+            return lockProvider.acquire(IMAGE, timeout);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
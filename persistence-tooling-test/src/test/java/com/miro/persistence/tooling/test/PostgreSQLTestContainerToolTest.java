@@ -0,0 +1,121 @@
+package com.miro.persistence.tooling.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.miro.persistence.tooling.core.FlywayChecksumUtils;
+import com.miro.persistence.tooling.core.FlywayMigrationSet;
+import com.miro.persistence.tooling.core.MigrationCatalogResourceProvider;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import org.flywaydb.core.api.configuration.FluentConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PostgreSQLTestContainerToolTest {
+
+    private static final String JDBC_URL = "jdbc:postgresql://localhost:5432/database";
+
+    @TempDir
+    Path tempDir;
+
+    private String location;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Files.writeString(tempDir.resolve("V1__create_users.sql"), "CREATE TABLE users (id BIGINT);");
+        location = "filesystem:" + tempDir.toAbsolutePath();
+        System.setProperty("persistence-tooling.checksum-cache.enabled", "false");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        System.clearProperty("persistence-tooling.checksum-cache.enabled");
+    }
+
+    @Test
+    public void configureFlyway_shouldServeMigrationsFromCatalog() {
+        var configuration = new PostgreSQLTestContainerTool()
+                .configureFlyway(JDBC_URL, null, location, "schema_version");
+
+        assertThat(configuration.getResourceProvider()).isInstanceOf(MigrationCatalogResourceProvider.class);
+    }
+
+    @Test
+    public void configureFlyway_whenCustomizeFlywayAddsLocation_shouldLetFlywayScanLocations() {
+        var tool = new PostgreSQLTestContainerTool() {
+            @Override
+            protected void customizeFlyway(FluentConfiguration configuration) {
+                configuration.locations(location, "classpath:db/extra");
+            }
+        };
+
+        var configuration = tool.configureFlyway(JDBC_URL, null, location, "schema_version");
+
+        assertThat(configuration.getResourceProvider()).isNull();
+        assertThat(configuration.getJavaMigrationClassProvider()).isNull();
+        assertThat(configuration.getLocations()).hasSize(2);
+    }
+
+    @Test
+    public void configureFlyway_whenMigrationsInSubdirectory_shouldLetFlywayScanLocation() throws IOException {
+        Files.writeString(Files.createDirectories(tempDir.resolve("nested")).resolve("V2__add_users_name.sql"),
+                "ALTER TABLE users ADD name TEXT;");
+
+        var configuration = new PostgreSQLTestContainerTool()
+                .configureFlyway(JDBC_URL, null, location, "schema_version");
+
+        assertThat(configuration.getResourceProvider()).isNull();
+        assertThat(configuration.getJavaMigrationClassProvider()).isNull();
+    }
+
+    @Test
+    public void selectAncestorImage_shouldSelectImageWithLongestMigrationPrefix() throws IOException {
+        var v1 = prefixDigests("V1__create_users.sql");
+        var v2 = prefixDigests("V1__create_users.sql", "V2__add_users_name.sql");
+        var v3 = prefixDigests("V1__create_users.sql", "V2__add_users_name.sql", "V3__add_users_email.sql");
+
+        var images = Map.of(
+                "postgres-it:V1-aaaaaa", v1.get(0),
+                "postgres-it:V2-bbbbbb", v2.get(1),
+                "postgres-it:other", "unknown-digest");
+
+        assertThat(v3.subList(0, 2)).isEqualTo(v2);
+        assertThat(PostgreSQLTestContainerTool.selectAncestorImage(images, v3)).isEqualTo("postgres-it:V2-bbbbbb");
+        assertThat(PostgreSQLTestContainerTool.selectAncestorImage(images, v1)).isEqualTo("postgres-it:V1-aaaaaa");
+    }
+
+    @Test
+    public void selectAncestorImage_whenAppliedMigrationChanged_shouldNotSelectImage() throws IOException {
+        var v2 = prefixDigests("V1__create_users.sql", "V2__add_users_name.sql");
+        Files.writeString(tempDir.resolve("V1__create_users.sql"), "CREATE TABLE users (id BIGINT, name TEXT);");
+        var changed = prefixDigests("V1__create_users.sql", "V2__add_users_name.sql");
+
+        assertThat(PostgreSQLTestContainerTool.selectAncestorImage(Map.of("postgres-it:V2-bbbbbb", v2.get(1)),
+                changed)).isNull();
+    }
+
+    /**
+     * Prefix digests of the migrations of the temp dir, the missing ones are created.
+     */
+    private List<String> prefixDigests(String... fileNames) throws IOException {
+        var dir = Files.createDirectories(tempDir.resolve("set-" + fileNames.length));
+        for (var fileName : fileNames) {
+            var source = tempDir.resolve(fileName);
+            if (!Files.exists(source)) {
+                Files.writeString(source, "-- " + fileName);
+            }
+            Files.copy(source, dir.resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
+        }
+        var flywayMigrationSet = FlywayMigrationSet.builder()
+                .migrationResourcesPath("filesystem:" + dir)
+                .dockerImageName("postgres-it")
+                .build();
+        return FlywayChecksumUtils.calculate("postgres:15.4-alpine", flywayMigrationSet).getPrefixDigests();
+    }
+}